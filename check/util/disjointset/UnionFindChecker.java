@@ -0,0 +1,121 @@
+package util.disjointset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Checks that {@link ConcurrentUnionFind} is linearizable under concurrent unions and finds.<br>
+ * Several threads run unions of random pairs, interleaved with finds that keep splitting paths. The unions that
+ * returned true are then replayed sequentially: in any linearization each of them merges two distinct sets, so they
+ * must form a forest, and together they must connect exactly what all unions connect. This also means that of
+ * several concurrent unions of the same two sets exactly one returns true. Finally distinct() and find have to agree
+ * with an {@link OptimalUnionFind} that ran all unions sequentially.<br>
+ * Every other round, all threads run the same unions in the same order, so that they race for every single merge.<br>
+ * The checker lives in the checks source set, which isn't part of the jar. {@code gradle check} in build-tools runs it
+ * and fails if any round fails.
+ */
+public class UnionFindChecker {
+
+    public static void main(String[] args) throws Exception {
+
+        int rounds = 200;
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        try {
+            if (args.length > 0)
+                rounds = Integer.parseInt(args[0]);
+            if (args.length > 1)
+                threads = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            System.err.println("Allowed arguments: [rounds] [threads]");
+            return;
+        }
+
+        Random random = new Random(42);
+        int failures = 0;
+        for (int round = 0; round < rounds; round++) {
+            int size = 1 + random.nextInt(2000);
+            boolean contended = round % 2 == 1;
+            String error = check(size, threads, contended, random.nextLong());
+            if (error != null) {
+                failures++;
+                System.out.printf("Round %s (%s elements, %s): %s\n", round, size,
+                                  contended ? "contended" : "spread", error);
+            }
+        }
+        System.out.printf("%s of %s rounds with %s threads failed.\n", failures, rounds, threads);
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    // runs a single round and returns a description of the first violation found or null
+    private static String check(int size, int threads, boolean contended, long seed) throws Exception {
+        Random random = new Random(seed);
+        int operations = 3 * size;
+        int[] from = new int[operations], to = new int[operations];
+        for (int k = 0; k < operations; k++) {
+            from[k] = random.nextInt(size);
+            to[k] = random.nextInt(size);
+        }
+
+        ConcurrentUnionFind set = new ConcurrentUnionFind(size);
+        // the unions that have returned true, by thread
+        List<List<Integer>> merged = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+            merged.add(new ArrayList<>());
+
+        CyclicBarrier start = new CyclicBarrier(threads);
+        Thread[] workers = new Thread[threads];
+        Throwable[] thrown = new Throwable[1];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    Random local = new Random(seed + thread);
+                    start.await();
+                    for (int k = contended ? 0 : thread; k < operations; k += contended ? 1 : threads) {
+                        if (set.union(from[k], to[k]))
+                            merged.get(thread).add(k);
+                        set.find(local.nextInt(size));
+                    }
+                } catch (Throwable e) {
+                    thrown[0] = e;
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        if (thrown[0] != null)
+            return "a thread threw " + thrown[0];
+
+        DisjointSet expected = new OptimalUnionFind(size);
+        for (int k = 0; k < operations; k++)
+            expected.union(from[k], to[k]);
+
+        DisjointSet replay = new OptimalUnionFind(size);
+        int successful = 0;
+        for (List<Integer> unions : merged) {
+            for (int k : unions) {
+                successful++;
+                if (!replay.union(from[k], to[k]))
+                    return String.format("union(%s, %s) returned true, but its sets had already been merged",
+                                         from[k], to[k]);
+            }
+        }
+        if (successful != size - expected.distinct())
+            return String.format("%s unions returned true instead of %s", successful, size - expected.distinct());
+        if (set.distinct() != expected.distinct())
+            return String.format("distinct() is %s instead of %s", set.distinct(), expected.distinct());
+        for (int i = 0; i < size; i++) {
+            int j = random.nextInt(size);
+            boolean same = expected.find(i) == expected.find(j);
+            if ((set.find(i) == set.find(j)) != same)
+                return String.format("%s and %s should %sbe in the same set", i, j, same ? "" : "not ");
+            if ((replay.find(i) == replay.find(j)) != same)
+                return String.format("the successful unions %s %s and %s", same ? "don't connect" : "connect", i, j);
+        }
+        return null;
+    }
+}
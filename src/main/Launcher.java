@@ -5,6 +5,12 @@ import util.graph.EdgeList;
 import util.graph.MinimumSpanningTreeAlgorithm;
 import util.graph.edge.WeightedEdge;
 import util.log.Logger;
+import util.queue.IndexedDAryHeap;
+import util.queue.IndexedFibonacciHeap;
+import util.queue.IndexedPriorityQueue;
+import util.queue.IndexedQueueAdapter;
+import util.queue.PairingHeap;
+import util.queue.RankPairingHeap;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -13,21 +19,39 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
 
 public class Launcher {
 
+    // the soft heap statistics of the last pr run
+    private static List<PettieRamachandranMST.LevelStatistics> levels = new ArrayList<>();
+
     private static Map<String, MinimumSpanningTreeAlgorithm<WeightedEdge<Double>>> algorithms = new HashMap<>();
     static {
         algorithms.put("prim", PrimMST::compute);
         algorithms.put("kruskal", KruskalMST::compute);
         algorithms.put("boruvka", BoruvkaMST::compute);
         algorithms.put("ft", FredmanTarjanMST::compute);
-        algorithms.put("pr", PettieRamachandranMST::compute);
+        algorithms.put("ct", CheritonTarjanMST::compute);
+        algorithms.put("pft", ParallelFredmanTarjanMST::compute);
+        algorithms.put("pr", (vertices, edges) -> PettieRamachandranMST.compute(vertices, edges, levels));
+    }
+
+    // the queues that prim and ft can use, selected by heap=<name>
+    private static Map<String, IntFunction<IndexedPriorityQueue>> heaps = new HashMap<>();
+    static {
+        heaps.put("dary", n -> new IndexedDAryHeap(4, n));
+        heaps.put("binary", n -> new IndexedDAryHeap(2, n));
+        heaps.put("fibonacci", IndexedFibonacciHeap::new);
+        heaps.put("pairing", n -> new IndexedQueueAdapter(n, PairingHeap::new));
+        heaps.put("rankpairing", n -> new IndexedQueueAdapter(n, RankPairingHeap::new));
     }
 
     private static void printUsage() {
         String algs = String.join(" | ", algorithms.keySet());
-        System.err.printf("Allowed arguments: %s | log | show\n", algs);
+        String queues = String.join(" | ", heaps.keySet());
+        System.err.printf("Allowed arguments: %s | heap=(%s) | buckets | threads=<n> | errorrate=<x> | log | show\n",
+                          algs, queues);
     }
 
     public static void main(String[] args) {
@@ -36,14 +60,32 @@ public class Launcher {
         Logger.setActive(false);
         boolean show = false;
 
-        List<MinimumSpanningTreeAlgorithm<WeightedEdge<Double>>> algs = new ArrayList<>();
+        List<String> algs = new ArrayList<>();
 
         for (String s : args) {
             if (algorithms.containsKey(s)) {
-                algs.add(algorithms.get(s));
+                algs.add(s);
+                continue;
+            }
+            if (s.startsWith("heap=") && heaps.containsKey(s.substring(5))) {
+                IntFunction<IndexedPriorityQueue> heap = heaps.get(s.substring(5));
+                PrimMST.setQueue(heap);
+                FredmanTarjanMST.setQueue(heap);
+                continue;
+            }
+            if (s.matches("threads=[1-9][0-9]*")) {
+                ParallelFredmanTarjanMST.setParallelism(Integer.parseInt(s.substring(8)));
+                continue;
+            }
+            // a fixed error rate for the soft heaps of pr instead of the adapted one
+            if (s.matches("errorrate=0?\\.[0-9]*[1-9][0-9]*")) {
+                PettieRamachandranMST.setErrorRate(Double.parseDouble(s.substring(10)), false);
                 continue;
             }
             switch (s) {
+                case "buckets":
+                    PrimMST.setBucketQueue(true);
+                    continue;
                 case "log":
                     Logger.setActive(true);
                     continue;
@@ -56,7 +98,7 @@ public class Launcher {
         }
 
         if (algs.size() == 0)
-            algs.add(PettieRamachandranMST::compute);
+            algs.add("pr");
 
         int vertices = 0;
         EdgeList<WeightedEdge<Double>> edges = new EdgeList<>();
@@ -75,9 +117,10 @@ public class Launcher {
             return;
         }
 
-        for (MinimumSpanningTreeAlgorithm<WeightedEdge<Double>> alg : algs) {
+        for (String alg : algs) {
             long now = System.currentTimeMillis();
-            EdgeList<WeightedEdge<Double>> mst = alg.findMST(vertices, edges);
+            levels.clear();
+            EdgeList<WeightedEdge<Double>> mst = algorithms.get(alg).findMST(vertices, edges);
 
             if (show) {
                 for (WeightedEdge<Double> edge : mst) {
@@ -85,7 +128,12 @@ public class Launcher {
                 }
             }
             System.out.printf("Total weight: %s\n", mst.stream().mapToDouble(WeightedEdge::weight).sum());
-            System.out.printf("Took %s ms\n\n", System.currentTimeMillis() - now);
+            System.out.printf("Took %s ms\n", System.currentTimeMillis() - now);
+            if (alg.equals("pr")) {
+                for (int i = 0; i < levels.size(); i++)
+                    System.out.printf("Level %s: %s\n", i + 1, levels.get(i));
+            }
+            System.out.println();
         }
     }
 }
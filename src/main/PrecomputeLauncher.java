@@ -1,30 +1,38 @@
 package main;
 
+import util.decision.DecisionTreeRepository;
 import util.decision.PrecomputedMSTCollection;
 import util.log.Logger;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.util.zip.GZIPOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class PrecomputeLauncher {
 
     public static void main(String[] args) {
 
-        String fileName = "precomputed-msts";
+        String fileName = DecisionTreeRepository.DEFAULT_FILE;
         int maxVertices;
 
-        if (args.length < 1) {
+        // with --resume, the structures in the checkpoint of an earlier run aren't computed again
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        boolean resume = arguments.remove("--resume");
+
+        if (arguments.size() < 1) {
             System.err.println("Please supply the number of trees to precompute!");
             return;
         }
-        if (args.length > 1) {
-            fileName = args[1];
+        if (arguments.size() > 1) {
+            fileName = arguments.get(1);
         }
 
         try {
-            maxVertices = Integer.parseInt(args[0]);
+            maxVertices = Integer.parseInt(arguments.get(0));
         } catch (NumberFormatException e) {
             System.err.println("Illegal input!");
             return;
@@ -33,13 +41,19 @@ public class PrecomputeLauncher {
         System.out.printf("Starting precomputation of decision trees for graphs with up to %s vertices.\n", maxVertices);
         Logger.setActive(true);
 
-        try (ObjectOutputStream oos = new ObjectOutputStream(new GZIPOutputStream(new FileOutputStream(fileName)))) {
+        Path checkpoint = Paths.get(fileName + DecisionTreeRepository.CHECKPOINT_SUFFIX);
+        try {
 
-            PrecomputedMSTCollection msts = PrecomputedMSTCollection.computeUpTo(maxVertices);
-            oos.writeObject(msts);
+            if (!resume)
+                Files.deleteIfExists(checkpoint);
+            PrecomputedMSTCollection msts = PrecomputedMSTCollection.computeUpTo(maxVertices,
+                    Runtime.getRuntime().availableProcessors(), checkpoint);
+            DecisionTreeRepository.save(msts, Paths.get(fileName));
+            Files.delete(checkpoint);
 
         } catch (IOException e) {
             System.err.println("Cannot write to file!");
+            return;
         }
 
         System.out.printf("Finished precomputation of decision trees for graphs with up to %s vertices.\n", maxVertices);
@@ -6,34 +6,49 @@ import util.graph.Graphs;
 import util.graph.edge.ContractedEdge;
 import util.graph.edge.DirectedEdge;
 
-import java.util.ArrayList;
+import java.util.Objects;
 import java.util.Set;
 
 public final class BoruvkaMST {
 
+    private static volatile RecursionCutoff cutoff = RecursionCutoff.DEFAULT;
+
+    /**
+     * Sets the size below which the remaining graph is handed to a simple algorithm instead of being contracted further.
+     * @param cutoff the new cutoff
+     */
+    public static void setCutoff(RecursionCutoff cutoff) {
+        BoruvkaMST.cutoff = Objects.requireNonNull(cutoff);
+    }
+
     public static <T, E extends DirectedEdge<T, E> & Comparable<? super E>>
             EdgeList<E> compute(int vertices, Iterable<E> edges) {
-        ArrayList<ContractedEdge<T, E>> wrapper = new ArrayList<>();
+        EdgeList<ContractedEdge<T, E>> wrapper = new EdgeList<>();
         for (E e : edges)
-            wrapper.add(new ContractedEdge<>(e));
-        return recurse(vertices, wrapper);
+            wrapper.append(new ContractedEdge<>(e));
+        return iterate(vertices, wrapper, cutoff);
     }
 
     private static <T, E extends DirectedEdge<T, E> & Comparable<? super E>>
-            EdgeList<E> recurse(int vertices, Iterable<ContractedEdge<T, E>> edges) {
+            EdgeList<E> iterate(int vertices, EdgeList<ContractedEdge<T, E>> edges, RecursionCutoff cutoff) {
 
-        if (vertices < 2)
-            return new EdgeList<>();
+        EdgeList<E> markedEdges = new EdgeList<>();
 
-        Set<ContractedEdge<T, E>> forestEdges = Graphs.lightestEdgePerVertex(vertices, edges);
-        Graph<ContractedEdge<T, ContractedEdge<T, E>>> contracted = Graphs.contract(vertices, forestEdges, edges);
-        EdgeList<ContractedEdge<T, E>> contractedEdges = Graphs.flatten(contracted.edges);
+        while (edges.size() > 0) {
+            if (cutoff.applies(edges.size())) {
+                cutoff.solve(vertices, edges).forEach(e -> markedEdges.append(e.original));
+                break;
+            }
 
-        // extract original edges
-        EdgeList<E> markedEdges = new EdgeList<>();
-        forestEdges.stream().map(e -> e.original).forEach(markedEdges::append);
+            Set<ContractedEdge<T, E>> forestEdges = Graphs.lightestEdgePerVertex(vertices, edges);
+            Graph<ContractedEdge<T, ContractedEdge<T, E>>> contracted = Graphs.contract(vertices, forestEdges, edges);
+
+            // extract original edges
+            forestEdges.stream().map(e -> e.original).forEach(markedEdges::append);
 
-        markedEdges.meld(recurse(contracted.vertices, contractedEdges));
+            vertices = contracted.vertices;
+            edges = Graphs.flatten(contracted.edges);
+        }
         return markedEdges;
     }
 }
@@ -0,0 +1,83 @@
+package mst;
+
+import util.disjointset.DisjointSet;
+import util.disjointset.OptimalUnionFind;
+import util.graph.AdjacencyList;
+import util.graph.EdgeList;
+import util.graph.edge.DirectedEdge;
+import util.queue.LeftistHeap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The algorithm of Cheriton and Tarjan (and of Yao): every component keeps a meldable heap of the edges incident to
+ * it. The components are processed in a queue. The lightest edge leaving the component at the front is added to the
+ * forest, the two components it connects are united and their heaps melded, and the result goes to the back of the
+ * queue. No graph is ever contracted: edges that have become internal to a component are only deleted lazily, when
+ * they come up at the top of its heap, and then all at once by {@link LeftistHeap#purge}.<br>
+ * The queue makes the components grow evenly, which together with purging the heaps and melding the remaining
+ * subtrees in pairs is what gives Cheriton and Tarjan their bound of O(m log log n). They meld lazily as well, here
+ * every meld takes O(log n), which adds O(n log n).
+ */
+public final class CheritonTarjanMST {
+
+    public static <T, E extends DirectedEdge<T, E> & Comparable<? super E>> EdgeList<E> compute(int vertices, Iterable<E> edges) {
+
+        // the heap of each component is stored at its representative in the disjoint set, the heap of a single
+        // vertex is built from its adjacency list in linear time
+        AdjacencyList<E> adjacency = AdjacencyList.of(vertices, edges);
+        List<LeftistHeap<E>> heaps = new ArrayList<>(vertices);
+        for (int v = 0; v < vertices; v++) {
+            LeftistHeap<E> heap = LeftistHeap.naturallyOrdered();
+            heap.insertAll(adjacency.get(v));
+            heaps.add(heap);
+        }
+        adjacency = null;
+
+        DisjointSet components = new OptimalUnionFind(vertices);
+        EdgeList<E> result = new EdgeList<>();
+
+        // the queue holds the representatives of the components, every component is queued once at the start and
+        // once after each union, so there are less than 2n entries. An entry is stale if its component has been queued
+        // again since.
+        int[] queue = new int[2 * vertices];
+        int[] queuedVersion = new int[2 * vertices];
+        int[] version = new int[vertices];
+        int head = 0, tail = 0;
+        for (int v = 0; v < vertices; v++)
+            queue[tail++] = v;
+
+        while (head < tail) {
+            int component = queue[head];
+            int queued = queuedVersion[head++];
+            if (components.find(component) != component || queued != version[component])
+                continue;
+
+            // delete the edges that have become internal until the lightest edge leaves the component
+            LeftistHeap<E> heap = heaps.get(component);
+            heap.purge(e -> components.find(e.from()) == components.find(e.to()));
+            // a component without edges leaving it is a tree of the forest
+            if (heap.empty())
+                continue;
+
+            E lightest = heap.pop();
+            result.append(lightest);
+            int other = components.find(lightest.from()) == component ? components.find(lightest.to())
+                                                                         : components.find(lightest.from());
+            components.union(component, other);
+
+            int united = components.find(component);
+            LeftistHeap<E> merged = heaps.get(component);
+            merged.meld(heaps.get(other));
+            heaps.set(component, null);
+            heaps.set(other, null);
+            heaps.set(united, merged);
+
+            version[united]++;
+            queue[tail] = united;
+            queuedVersion[tail++] = version[united];
+        }
+        return result;
+    }
+}
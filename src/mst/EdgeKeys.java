@@ -0,0 +1,90 @@
+package mst;
+
+import util.graph.edge.DirectedEdge;
+import util.queue.IndexedDAryHeap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Maps edges to primitive long keys that order them like their weights, so that the MST algorithms can use
+ * primitive heaps such as {@link IndexedDAryHeap}.
+ */
+final class EdgeKeys {
+
+    // the largest magnitude up to which a double represents every integer
+    private static final double MAX_EXACT_INTEGER = 0x1p53;
+
+    private EdgeKeys() {}
+
+    /**
+     * Returns a key that represents the weight of every edge exactly. This is possible for all primitive wrapper
+     * types: integral weights are their own keys and floating point weights are mapped by
+     * {@link IndexedDAryHeap#key(double)}.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param edges the edges, all of them have to have weights of the same type
+     * @return the key function or null if the weights aren't numeric
+     */
+    static <T, E extends DirectedEdge<T, E>> ToLongFunction<E> exact(Iterable<E> edges) {
+        Iterator<E> it = edges.iterator();
+        if (!it.hasNext())
+            return e -> 0;
+        Object weight = it.next().weight();
+        if (weight instanceof Double || weight instanceof Float)
+            return e -> IndexedDAryHeap.key(((Number) e.weight()).doubleValue());
+        if (weight instanceof Long || weight instanceof Integer || weight instanceof Short || weight instanceof Byte)
+            return e -> ((Number) e.weight()).longValue();
+        return null;
+    }
+
+    /**
+     * Returns a key that is the weight of every edge itself, if all weights are integral. This is the case for the
+     * integral wrapper types and for floating point weights without fractions whose magnitude is at most 2^53, the
+     * range in which a double represents every integer.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param edges the edges, all of them have to have weights of the same type
+     * @return the key function or null if some weight isn't integral
+     */
+    static <T, E extends DirectedEdge<T, E>> ToLongFunction<E> integral(Iterable<E> edges) {
+        Iterator<E> it = edges.iterator();
+        if (!it.hasNext())
+            return e -> 0;
+        Object weight = it.next().weight();
+        if (weight instanceof Long || weight instanceof Integer || weight instanceof Short || weight instanceof Byte)
+            return e -> ((Number) e.weight()).longValue();
+        if (!(weight instanceof Double || weight instanceof Float))
+            return null;
+        for (E e : edges) {
+            double w = ((Number) e.weight()).doubleValue();
+            if (w != Math.rint(w) || Math.abs(w) > MAX_EXACT_INTEGER)
+                return null;
+        }
+        return e -> (long) ((Number) e.weight()).doubleValue();
+    }
+
+    /**
+     * Returns a key that is the rank of each edge among the given edges ordered by weight. Unlike {@link #exact} this
+     * works for any weight type, but it takes O(m log m) time to sort the edges first and it is only defined for the
+     * given edge objects.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param edges the edges
+     * @return the key function
+     */
+    static <T extends Comparable<? super T>, E extends DirectedEdge<T, E>> ToLongFunction<E> ranks(Iterable<E> edges) {
+        List<E> sorted = new ArrayList<>();
+        edges.forEach(sorted::add);
+        sorted.sort(Comparator.comparing(DirectedEdge::weight));
+        Map<E, Long> rank = new IdentityHashMap<>(sorted.size());
+        for (int i = 0; i < sorted.size(); i++)
+            rank.put(sorted.get(i), (long) i);
+        return rank::get;
+    }
+}
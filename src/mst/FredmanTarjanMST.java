@@ -6,103 +6,127 @@ import util.graph.Graph;
 import util.graph.Graphs;
 import util.graph.edge.ContractedEdge;
 import util.graph.edge.DirectedEdge;
-import util.queue.ExtendedPriorityQueue;
-import util.queue.FibonacciHeap;
+import util.queue.IndexedDAryHeap;
+import util.queue.IndexedPriorityQueue;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
 
 public final class FredmanTarjanMST {
 
+    private static volatile IntFunction<? extends IndexedPriorityQueue> queues = PrimMST.DEFAULT_QUEUE;
+
+    /**
+     * Sets the primitive queue used whenever no queue is passed explicitly.
+     * @param queues creates the queue for a given number of vertices
+     */
+    public static void setQueue(IntFunction<? extends IndexedPriorityQueue> queues) {
+        FredmanTarjanMST.queues = Objects.requireNonNull(queues);
+    }
+
     public static <T extends Comparable<? super T>, E extends DirectedEdge<T, E> & Comparable<? super E>>
         	EdgeList<E> compute(int vertices, Iterable<E> edges) {
+        ToLongFunction<E> key = EdgeKeys.exact(edges);
+        if (key == null)
+            key = EdgeKeys.ranks(edges);
+        return compute(vertices, edges, key);
+    }
+
+    /**
+     * Computes the minimum spanning forest with the queue set by {@link #setQueue}, by default an
+     * {@link IndexedDAryHeap}, that compares the primitive keys of the edges instead of their weights.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param vertices the number of vertices
+     * @param edges the edges of the graph
+     * @param key the key of each edge, has to order the edges like their weights
+     * @return the edges of the minimum spanning forest
+     */
+    public static <T, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            EdgeList<E> compute(int vertices, Iterable<E> edges, ToLongFunction<? super E> key) {
+        return compute(vertices, edges, key, queues);
+    }
+
+    /**
+     * Computes the minimum spanning forest with a primitive queue that compares the primitive keys of the edges
+     * instead of their weights.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param vertices the number of vertices
+     * @param edges the edges of the graph
+     * @param key the key of each edge, has to order the edges like their weights
+     * @param queues creates the queue for a given number of vertices
+     * @return the edges of the minimum spanning forest
+     */
+    public static <T, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            EdgeList<E> compute(int vertices, Iterable<E> edges, ToLongFunction<? super E> key,
+                                IntFunction<? extends IndexedPriorityQueue> queues) {
         EdgeList<ContractedEdge<T, E>> wrapper = new EdgeList<>();
         for (E e : edges)
             wrapper.append(new ContractedEdge<>(e));
-        return recurse(vertices, wrapper);
+        return recurse(vertices, wrapper, key, queues);
     }
 
-    private static <T extends Comparable<? super T>, E extends DirectedEdge<T, E> & Comparable<? super E>>
-            EdgeList<E> recurse(int vertices, EdgeList<ContractedEdge<T, E>> edges) {
+    private static <T, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            EdgeList<E> recurse(int vertices, EdgeList<ContractedEdge<T, E>> edges, ToLongFunction<? super E> key,
+                                IntFunction<? extends IndexedPriorityQueue> queues) {
 
-        if (vertices < 2)
+        int edgeCount = edges.size();
+        if (vertices < 2 || edgeCount == 0)
             return new EdgeList<>();
 
-        List<T> distances = new ArrayList<>();
-        List<ContractedEdge<T, E>> predecessorEdge = new ArrayList<>();
-        for (int i = 0; i < vertices; i++) {
-            predecessorEdge.add(null);
-            distances.add(null);
-        }
+        List<ContractedEdge<T, E>> predecessorEdge = new ArrayList<>(Collections.nCopies(vertices, null));
 
         AdjacencyList<ContractedEdge<T, E>> adjacency = AdjacencyList.of(vertices, edges);
 
-        int edgeCount = edges.size();
-
-        Comparator<Integer> nullsLast = Comparator.comparing(distances::get, Comparator.nullsLast(T::compareTo));
-        ExtendedPriorityQueue<Integer> queue = new FibonacciHeap<>(nullsLast);
+        IndexedPriorityQueue queue = queues.apply(vertices);
 
-        long[] ids = new long[vertices];
-        for (int i = 0; i < vertices; i++)
-            ids[i] = queue.insertWithId(i);
-
-        // calculate upper bound for component size
+        // calculate upper bound for the heap size
         int exp = 2 * edgeCount / vertices;
         // avoid overflows
         exp = Math.min(62, exp);
-        long componentMax = 1L << exp;
-
-        int[] discoveredInIteration = new int[vertices];
-        for (int i = 0; i < vertices; i++)
-            discoveredInIteration[i] = -1;
+        long heapMax = 1L << exp;
 
-        int iterations = 0;
+        // the tree that a vertex has been added to or -1 if it hasn't been reached yet
+        int[] tree = new int[vertices];
+        Arrays.fill(tree, -1);
+        int trees = 0;
 
-        // grow component trees
-        while (!queue.empty()) {
+        List<ContractedEdge<T, E>> forestEdges = new ArrayList<>();
 
-            int componentSize = 0;
+        // grow a tree from every vertex that hasn't been reached yet
+        for (int root = 0; root < vertices; root++) {
+            if (tree[root] != -1)
+                continue;
 
-            // find arbitrary tree root
-            int componentRoot = queue.peek();
-            predecessorEdge.set(componentRoot, null);
+            int current = trees++;
+            // every tree starts with an empty heap: keys left over from an earlier tree belong to edges leaving
+            // that tree and must not be mistaken for edges leaving this one
+            queue.clear();
+            tree[root] = current;
+            relax(root, current, tree, adjacency, queue, predecessorEdge, key);
 
-            // grow a single tree
-            while (!queue.empty() && componentSize < componentMax) {
+            // grow a single tree, each step adds the lightest edge leaving it
+            while (!queue.empty()) {
                 int vertex = queue.pop();
+                forestEdges.add(predecessorEdge.get(vertex));
 
-                componentSize++;
-                discoveredInIteration[vertex] = iterations;
-
-                // stop if two trees are about to merge
-                if (predecessorEdge.get(vertex) != null) {
-                    int predecessor = predecessorEdge.get(vertex).from();
-                    if (discoveredInIteration[predecessor] != discoveredInIteration[vertex])
-                        break;
-                }
-
-                for (ContractedEdge<T, E> e : adjacency.get(vertex)) {
-                    // relax newly discovered vertices
-                    if (discoveredInIteration[e.to()] == -1) {
-                        if (distances.get(e.to()) == null || distances.get(e.to()).compareTo(e.weight()) > 0) {
-                            distances.set(e.to(), e.weight());
-                            predecessorEdge.set(e.to(), e);
-                            queue.decrease(ids[e.to()]);
-                        }
-                    }
-                }
-            }
-            iterations++;
-        }
+                // stop if the tree has reached an earlier one, the two are merged by the edge just added
+                if (tree[vertex] != -1)
+                    break;
 
-        // find non-null edges
-        HashSet<ContractedEdge<T, E>> forestEdges = new HashSet<>();
-        for (ContractedEdge<T, E> e : predecessorEdge) {
-            if (e == null)
-                continue;
-            forestEdges.add(e);
+                tree[vertex] = current;
+                relax(vertex, current, tree, adjacency, queue, predecessorEdge, key);
+
+                // stop once the tree has too many neighbours
+                if (queue.size() > heapMax)
+                    break;
+            }
         }
 
         // extract original edges
@@ -110,7 +134,7 @@ public final class FredmanTarjanMST {
         forestEdges.stream().map(e -> e.original).forEach(markedEdges::append);
 
         // if a single component remains we can return the mst edges
-        if (iterations == 1)
+        if (trees == 1)
             return markedEdges;
 
         // otherwise we contract the components
@@ -118,7 +142,17 @@ public final class FredmanTarjanMST {
         EdgeList<ContractedEdge<T, E>> contractedEdges = Graphs.flatten(contracted.edges);
 
         // and recurse on the contracted graph
-        markedEdges.meld(recurse(contracted.vertices, contractedEdges));
+        markedEdges.meld(recurse(contracted.vertices, contractedEdges, key, queues));
         return markedEdges;
     }
+
+    // offers all edges from the vertex to vertices outside of the current tree to the heap
+    private static <T, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            void relax(int vertex, int current, int[] tree, AdjacencyList<ContractedEdge<T, E>> adjacency,
+                       IndexedPriorityQueue queue, List<ContractedEdge<T, E>> predecessorEdge, ToLongFunction<? super E> key) {
+        for (ContractedEdge<T, E> e : adjacency.get(vertex)) {
+            if (tree[e.to()] != current && queue.offer(e.to(), key.applyAsLong(e.original)))
+                predecessorEdge.set(e.to(), e);
+        }
+    }
 }
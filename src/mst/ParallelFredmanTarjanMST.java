@@ -0,0 +1,275 @@
+package mst;
+
+import util.disjointset.ConcurrentUnionFind;
+import util.disjointset.DisjointSet;
+import util.graph.AdjacencyList;
+import util.graph.EdgeList;
+import util.graph.Graphs;
+import util.graph.edge.ContractedEdge;
+import util.graph.edge.DirectedEdge;
+import util.queue.MultiQueue;
+import util.queue.PairingHeap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * A parallel version of {@link FredmanTarjanMST}: several threads grow trees at the same time.<br>
+ * The roots are taken from a {@link MultiQueue} of all vertices, ordered by their lightest edge. Each thread grows a
+ * tree from a root it has claimed with its own heap and claims the vertices it pops. If a vertex has been claimed by
+ * another tree, the two trees are joined by the edge to it in a shared disjoint set and the tree stops. A tree also
+ * stops once its heap exceeds the bound of Fredman and Tarjan. The joined trees are then contracted and the algorithm
+ * recurses on the contracted graph.<br>
+ * The trees only agree on the edges that join them if all threads order the edges the same way, so ties between keys
+ * are broken by comparing the edges. Then every edge of a tree is the lightest edge leaving some set of vertices and
+ * belongs to the unique minimum spanning forest, and the disjoint set only filters edges that both trees have chosen.
+ */
+public final class ParallelFredmanTarjanMST {
+
+    // the number of lanes of the queue of roots per thread
+    private static final int LANES_PER_THREAD = 2;
+
+    private static volatile int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Sets the number of threads used whenever it isn't passed explicitly, by default the number of processors.
+     * @param threads the number of threads
+     */
+    public static void setParallelism(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("The number of threads must be positive.");
+        parallelism = threads;
+    }
+
+    public static <T extends Comparable<? super T>, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            EdgeList<E> compute(int vertices, Iterable<E> edges) {
+        ToLongFunction<E> key = EdgeKeys.exact(edges);
+        if (key == null)
+            key = EdgeKeys.ranks(edges);
+        return compute(vertices, edges, key, parallelism);
+    }
+
+    /**
+     * Computes the minimum spanning forest with the given number of threads.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param vertices the number of vertices
+     * @param edges the edges of the graph
+     * @param key the key of each edge, has to order the edges like their weights
+     * @param threads the number of threads
+     * @return the edges of the minimum spanning forest
+     */
+    public static <T, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            EdgeList<E> compute(int vertices, Iterable<E> edges, ToLongFunction<? super E> key, int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("The number of threads must be positive.");
+        EdgeList<ContractedEdge<T, E>> wrapper = new EdgeList<>();
+        for (E e : edges)
+            wrapper.append(new ContractedEdge<>(e));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return recurse(vertices, wrapper, key, threads, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static <T, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            EdgeList<E> recurse(int vertices, EdgeList<ContractedEdge<T, E>> edges, ToLongFunction<? super E> key,
+                                int threads, ForkJoinPool pool) {
+
+        int edgeCount = edges.size();
+        if (vertices < 2 || edgeCount == 0)
+            return new EdgeList<>();
+
+        AdjacencyList<ContractedEdge<T, E>> adjacency = AdjacencyList.of(vertices, edges);
+
+        // calculate upper bound for the heap size
+        int exp = 2 * edgeCount / vertices;
+        // avoid overflows
+        exp = Math.min(62, exp);
+        long heapMax = 1L << exp;
+
+        // the roots are started from light edges first, the key of a vertex is the key of its lightest edge
+        long[] lightest = new long[vertices];
+        Arrays.fill(lightest, Long.MAX_VALUE);
+        for (ContractedEdge<T, E> e : edges) {
+            long k = key.applyAsLong(e.original);
+            lightest[e.from()] = Math.min(lightest[e.from()], k);
+            lightest[e.to()] = Math.min(lightest[e.to()], k);
+        }
+        MultiQueue<Integer> roots = new MultiQueue<>(LANES_PER_THREAD * threads,
+                                                     (a, b) -> Long.compare(lightest[a], lightest[b]));
+
+        Growth<T, E> growth = new Growth<>(vertices, adjacency, key, heapMax, roots, threads);
+        pool.invoke(new Workers<>(growth, 0, threads));
+
+        // extract original edges
+        EdgeList<E> markedEdges = new EdgeList<>();
+        for (List<ContractedEdge<T, E>> found : growth.found)
+            found.forEach(e -> markedEdges.append(e.original));
+
+        // every vertex belongs to the component of the root of its tree
+        int[] index = new int[vertices];
+        Arrays.fill(index, -1);
+        int[] component = new int[vertices];
+        int components = 0;
+        for (int v = 0; v < vertices; v++) {
+            int representative = growth.joined.find(growth.tree.get(v));
+            if (index[representative] == -1)
+                index[representative] = components++;
+            component[v] = index[representative];
+        }
+
+        // if a single component remains we can return the mst edges
+        if (components == 1)
+            return markedEdges;
+
+        // otherwise we contract the components
+        EdgeList<ContractedEdge<T, E>> contracted = new EdgeList<>();
+        for (ContractedEdge<T, E> e : edges) {
+            int from = component[e.from()], to = component[e.to()];
+            if (from != to)
+                contracted.append(new ContractedEdge<>(from, to, e.original));
+        }
+
+        // and recurse on the contracted graph
+        markedEdges.meld(recurse(components, Graphs.removeDuplicates(components, contracted), key, threads, pool));
+        return markedEdges;
+    }
+
+    // the state that the threads share while growing their trees
+    private static final class Growth<T, E extends DirectedEdge<T, E> & Comparable<? super E>> {
+        private final int vertices;
+        private final AdjacencyList<ContractedEdge<T, E>> adjacency;
+        private final ToLongFunction<? super E> key;
+        private final long heapMax;
+        private final MultiQueue<Integer> roots;
+        // the root of the tree that a vertex has been claimed by or -1 if it hasn't been reached yet
+        private final AtomicIntegerArray tree;
+        // joins the roots of trees that have reached each other
+        private final DisjointSet joined;
+        // the edges found by each thread
+        private final List<List<ContractedEdge<T, E>>> found = new ArrayList<>();
+
+        Growth(int vertices, AdjacencyList<ContractedEdge<T, E>> adjacency, ToLongFunction<? super E> key,
+               long heapMax, MultiQueue<Integer> roots, int threads) {
+            this.vertices = vertices;
+            this.adjacency = adjacency;
+            this.key = key;
+            this.heapMax = heapMax;
+            this.roots = roots;
+            tree = new AtomicIntegerArray(vertices);
+            for (int v = 0; v < vertices; v++)
+                tree.set(v, -1);
+            joined = new ConcurrentUnionFind(vertices);
+            for (int i = 0; i < threads; i++)
+                found.add(new ArrayList<>());
+        }
+
+        // runs a single thread: enqueues its share of the roots, then grows trees until no root is left
+        void grow(int thread, int threads) {
+            for (int v = thread; v < vertices; v += threads)
+                roots.insert(v);
+
+            List<ContractedEdge<T, E>> edges = found.get(thread);
+            // the key and edge of each vertex in the heap, a vertex is in the heap of the current tree iff its stamp
+            // equals the number of the tree
+            long[] keys = new long[vertices];
+            Object[] best = new Object[vertices];
+            long[] ids = new long[vertices];
+            int[] stamp = new int[vertices];
+            int epoch = 0;
+            PairingHeap<Integer> heap = new PairingHeap<>((a, b) -> {
+                int byKey = Long.compare(keys[a], keys[b]);
+                return byKey != 0 ? byKey : edge(best, a).compareTo(edge(best, b));
+            });
+
+            Integer root;
+            while ((root = roots.poll()) != null) {
+                if (!tree.compareAndSet(root, -1, root))
+                    continue;
+                epoch++;
+                heap.clear();
+                relax(root, root, epoch, keys, best, ids, stamp, heap);
+
+                // grow a single tree, each step adds the lightest edge leaving it
+                while (!heap.empty()) {
+                    int vertex = heap.pop();
+                    ContractedEdge<T, E> e = edge(best, vertex);
+
+                    // stop if another tree has claimed the vertex, the two are joined by the edge unless the other
+                    // tree has already added it
+                    if (!tree.compareAndSet(vertex, -1, root)) {
+                        if (joined.union(root, tree.get(vertex)))
+                            edges.add(e);
+                        break;
+                    }
+                    edges.add(e);
+                    relax(vertex, root, epoch, keys, best, ids, stamp, heap);
+
+                    // stop once the tree has too many neighbours
+                    if (heap.size() > heapMax)
+                        break;
+                }
+            }
+        }
+
+        // offers all edges from the vertex to vertices outside of the current tree to the heap
+        private void relax(int vertex, int root, int epoch, long[] keys, Object[] best, long[] ids, int[] stamp,
+                           PairingHeap<Integer> heap) {
+            for (ContractedEdge<T, E> e : adjacency.get(vertex)) {
+                int to = e.to();
+                if (tree.get(to) == root)
+                    continue;
+                long k = key.applyAsLong(e.original);
+                if (stamp[to] != epoch) {
+                    stamp[to] = epoch;
+                    keys[to] = k;
+                    best[to] = e;
+                    ids[to] = heap.insertWithId(to);
+                } else if (k < keys[to] || k == keys[to] && e.compareTo(edge(best, to)) < 0) {
+                    keys[to] = k;
+                    best[to] = e;
+                    heap.decrease(ids[to]);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private ContractedEdge<T, E> edge(Object[] best, int vertex) {
+            return (ContractedEdge<T, E>) best[vertex];
+        }
+    }
+
+    // runs the threads from first to last - 1, splitting the range until single threads remain
+    private static final class Workers<T, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Growth<T, E> growth;
+        private final int first;
+        private final int last;
+
+        Workers(Growth<T, E> growth, int first, int last) {
+            this.growth = growth;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new Workers<>(growth, first, middle), new Workers<>(growth, middle, last));
+                return;
+            }
+            growth.grow(first, growth.found.size());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package mst;
 
+import util.decision.DecisionTreeRepository;
 import util.decision.PrecomputedMSTCollection;
 import util.graph.AdjacencyList;
 import util.graph.EdgeList;
@@ -7,42 +8,154 @@ import util.graph.Graph;
 import util.graph.Graphs;
 import util.graph.edge.ContractedEdge;
 import util.graph.edge.DirectedEdge;
+import util.graph.edge.IndexedEdge;
 import util.graph.edge.RenamedEdge;
+import util.graph.edge.WeightedEdge;
 import util.log.Logger;
 import util.queue.SoftHeap;
-import util.queue.SoftPriorityQueue;
 
 import java.util.*;
+import java.util.function.ToDoubleFunction;
 
 public final class PettieRamachandranMST {
 
+    // the error rate of the soft heap that partitions the first level, the one Pettie and Ramachandran use
+    private static final double DEFAULT_ERROR_RATE = 0.125;
+    // the bounds within which the error rate is adapted from level to level
+    private static final double MIN_ERROR_RATE = 1.0 / 1024;
+    private static final double MAX_ERROR_RATE = 0.5;
+
+    private static volatile RecursionCutoff cutoff = RecursionCutoff.DEFAULT;
+    private static volatile double errorRate = DEFAULT_ERROR_RATE;
+    private static volatile boolean adaptive = true;
+
+    /**
+     * Sets the size below which the remaining graph is handed to a simple algorithm instead of being reduced further.
+     * @param cutoff the new cutoff
+     */
+    public static void setCutoff(RecursionCutoff cutoff) {
+        PettieRamachandranMST.cutoff = Objects.requireNonNull(cutoff);
+    }
+
+    /**
+     * Sets the error rate of the soft heap that partitions the first level and whether it is adapted for the following
+     * levels, see {@link #adapt}. By default the error rate starts at 1/8 and is adapted.
+     * @param errorRate the error rate, between 0 and 1
+     * @param adaptive true iff the error rate shall be adapted from level to level
+     */
+    public static void setErrorRate(double errorRate, boolean adaptive) {
+        if (!(errorRate > 0 && errorRate < 1))
+            throw new IllegalArgumentException("The error rate must be between 0 and 1.");
+        PettieRamachandranMST.errorRate = errorRate;
+        PettieRamachandranMST.adaptive = adaptive;
+    }
+
     public static <T extends Comparable<? super T>, E extends DirectedEdge<T, E> & Comparable<? super E>>
             EdgeList<E> compute(int vertices, Iterable<E> edges) {
+        return compute(vertices, edges, new ArrayList<>());
+    }
+
+    /**
+     * Computes the minimum spanning forest and reports what the soft heaps have done on each level of this
+     * computation.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param vertices the number of vertices
+     * @param edges the edges of the graph
+     * @param statistics receives the statistics of the levels in their order
+     * @return the edges of the minimum spanning forest
+     */
+    public static <T extends Comparable<? super T>, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            EdgeList<E> compute(int vertices, Iterable<E> edges, List<? super LevelStatistics> statistics) {
 
         EdgeList<ContractedEdge<T, E>> wrapper = new EdgeList<>(edges).map(ContractedEdge::new);
 
         int maxsize = maxPartitionSize(vertices);
-        PrecomputedMSTCollection decisionTrees = PrecomputedMSTCollection.computeUpTo(maxsize);
+        PrecomputedMSTCollection decisionTrees = DecisionTreeRepository.get(maxsize);
+
+        return iterate(vertices, wrapper, decisionTrees, numericKey(edges), cutoff, errorRate, adaptive, statistics);
+    }
 
-        return recurse(vertices, wrapper, decisionTrees);
+    // if the edges are ordered by numeric weights, the decision trees can compare these as primitives. The conversion
+    // to double is monotone for all of these types, so it never contradicts the order of the edges
+    private static <T, E extends DirectedEdge<T, E>> ToDoubleFunction<E> numericKey(Iterable<E> edges) {
+        Iterator<E> it = edges.iterator();
+        if (!it.hasNext())
+            return null;
+        E first = it.next();
+        if (!(first instanceof WeightedEdge))
+            return null;
+        Object weight = first.weight();
+        if (weight instanceof Double || weight instanceof Float || weight instanceof Long
+                || weight instanceof Integer || weight instanceof Short || weight instanceof Byte)
+            return e -> ((Number) e.weight()).doubleValue();
+        return null;
     }
 
     private static <T extends Comparable<? super T>, E extends DirectedEdge<T, E> & Comparable<? super E>>
-            EdgeList<E> recurse(int vertices, EdgeList<ContractedEdge<T, E>> edges, PrecomputedMSTCollection decisionTrees) {
+            EdgeList<E> iterate(int vertices, EdgeList<ContractedEdge<T, E>> edges, PrecomputedMSTCollection decisionTrees,
+                                ToDoubleFunction<? super E> key, RecursionCutoff cutoff, double errorRate,
+                                boolean adaptive, List<? super LevelStatistics> statistics) {
+
+        EdgeList<E> mst = new EdgeList<>();
+        List<LevelStatistics> levels = new ArrayList<>();
+
+        while (edges.size() > 0) {
+            // small graphs are solved directly, the overhead of another level would dwarf the actual work
+            if (cutoff.applies(edges.size())) {
+                cutoff.solve(vertices, edges).forEach(e -> mst.append(e.original));
+                break;
+            }
+            Graph<ContractedEdge<T, E>> reduced = reduce(vertices, edges, decisionTrees, key, errorRate, levels, mst);
+            vertices = reduced.vertices;
+            edges = reduced.edges;
+            if (adaptive)
+                errorRate = adapt(errorRate, levels.get(levels.size() - 1));
+        }
+        statistics.addAll(levels);
+        return mst;
+    }
+
+    // The corrupted edges that leave a partition are passed on to the next level, and the soft heap guarantees that at
+    // most errorRate * inserts edges are corrupted. If more than half of that many edges have been passed on, the
+    // error rate is halved for the next level. If the soft heap hasn't corrupted anything, it has been exact and more
+    // expensive than necessary, so the error rate is doubled.
+    private static double adapt(double errorRate, LevelStatistics level) {
+        if (level.corruptedEdges > errorRate / 2 * level.inserts)
+            return Math.max(MIN_ERROR_RATE, errorRate / 2);
+        if (level.corruptions == 0)
+            return Math.min(MAX_ERROR_RATE, errorRate * 2);
+        return errorRate;
+    }
+
+    // performs a single level of the algorithm: the mst edges found are appended to mst
+    // and the graph on which the algorithm has to continue is returned
+    private static <T extends Comparable<? super T>, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            Graph<ContractedEdge<T, E>> reduce(int vertices, EdgeList<ContractedEdge<T, E>> edges,
+                                               PrecomputedMSTCollection decisionTrees,
+                                               ToDoubleFunction<? super E> key, double errorRate,
+                                               List<LevelStatistics> levels, EdgeList<E> mst) {
 
-        if (edges.size() == 0)
-            return new EdgeList<>();
-        
         int maxsize = maxPartitionSize(vertices);
+        // Number the edges, so that the partitioning can keep track of them in plain arrays
+        List<ContractedEdge<T, E>> edgeById = edges.collect(ArrayList::new);
+        EdgeList<IndexedEdge<T, ContractedEdge<T, E>>> indexedEdges = new EdgeList<>();
+        for (int id = 0; id < edgeById.size(); id++)
+            indexedEdges.append(new IndexedEdge<>(id, edgeById.get(id)));
+
         // Calculate the partitions
-        PartitionWrapper<T, E> partitions = partition(AdjacencyList.of(vertices, edges), maxsize, 0.125);
-        
+        PartitionWrapper<T, E> partitions = partition(AdjacencyList.of(vertices, indexedEdges), edgeById.size(), maxsize, errorRate);
+        levels.add(partitions.statistics);
+
         EdgeList<RenamedEdge<T, ContractedEdge<T, E>>> partitionMSFWithRenamedEdges = new EdgeList<>();
 
+        ToDoubleFunction<RenamedEdge<T, ContractedEdge<T, E>>> partitionKey =
+                key == null ? null : e -> key.applyAsDouble(e.original.original);
+
         // Calculate all MSFs for these subgraphs of fixed size using optimal decision trees
         for (Graph<RenamedEdge<T, ContractedEdge<T, E>>> partition : partitions.subGraphs) {
             Logger.logf("Parition subgraph: %s", partition.edges);
-            partitionMSFWithRenamedEdges.meld(decisionTrees.findMST(partition.vertices, partition.edges.collect(ArrayList::new)));
+            partitionMSFWithRenamedEdges.meld(decisionTrees.findMST(partition.vertices, partition.edges.collect(ArrayList::new), partitionKey));
         }
 
         EdgeList<ContractedEdge<T, E>> partitionMSF = new EdgeList<>();
@@ -50,22 +163,24 @@ public final class PettieRamachandranMST {
 
         // Contract all partitions and calculate the MSF of the contracted graph
         // with Fredman and Tarjan's algorithm in O(m) time
-        Graph<ContractedEdge<T, ContractedEdge<T, E>>> contractedPartitions = Graphs.contract(vertices, partitionMSF, edges);
+        Graph<ContractedEdge<T, IndexedEdge<T, ContractedEdge<T, E>>>> contractedPartitions =
+                Graphs.contract(vertices, partitionMSF, indexedEdges);
 
         // Remove corrupted Edges
-        EdgeList<ContractedEdge<T, ContractedEdge<T, E>>> denseCaseEdges = new EdgeList<>();
-        for (ContractedEdge<T, ContractedEdge<T, E>> e : contractedPartitions.edges) {
-            if (!partitions.corruptedEdges.contains(e.original)) {
+        EdgeList<ContractedEdge<T, IndexedEdge<T, ContractedEdge<T, E>>>> denseCaseEdges = new EdgeList<>();
+        for (ContractedEdge<T, IndexedEdge<T, ContractedEdge<T, E>>> e : contractedPartitions.edges) {
+            if (!partitions.corruptedEdges.get(e.original.index)) {
                 denseCaseEdges.append(e);
             }
         }
 
         Logger.logf("Dense case edges: %s", denseCaseEdges);
-        EdgeList<ContractedEdge<T, ContractedEdge<T, E>>> denseCaseMST = FredmanTarjanMST.compute(contractedPartitions.vertices, denseCaseEdges);
+        EdgeList<ContractedEdge<T, IndexedEdge<T, ContractedEdge<T, E>>>> denseCaseMST =
+                FredmanTarjanMST.compute(contractedPartitions.vertices, denseCaseEdges);
 
         EdgeList<ContractedEdge<T, E>> reducedEdges = new EdgeList<>();
-        denseCaseMST.stream().map(e -> e.original).forEach(reducedEdges::append);
-        partitions.corruptedEdges.forEach(reducedEdges::append);
+        denseCaseMST.stream().map(e -> e.original.edge).forEach(reducedEdges::append);
+        partitions.corruptedEdges.stream().mapToObj(edgeById::get).forEach(reducedEdges::append);
         partitionMSF.forEach(reducedEdges::append);
         
         // Two Steps of Boruvka's algorithm
@@ -81,10 +196,8 @@ public final class PettieRamachandranMST {
             forestEdges.stream().map(e -> e.original).forEach(boruvkaEdges::append);
         }
 
-        EdgeList<E> mst = recurse(contractTwice.vertices, contractTwice.edges, decisionTrees);
         mst.meld(boruvkaEdges);
-        return mst;       
-
+        return contractTwice;
     }
     
     private static int maxPartitionSize(int vertices) {
@@ -96,84 +209,146 @@ public final class PettieRamachandranMST {
     }
 
     private static <T, E extends DirectedEdge<T, E> & Comparable<? super E>>
-            PartitionWrapper<T, E> partition(AdjacencyList<ContractedEdge<T, E>> edges, int maxsize, double errorRate) {
+            PartitionWrapper<T, E> partition(AdjacencyList<IndexedEdge<T, ContractedEdge<T, E>>> edges, int edgeCount,
+                                             int maxsize, double errorRate) {
 
-        boolean[] dead = new boolean[edges.size()];
-        for (int i = 0; i < dead.length; ++i) {
-        	dead[i] = false;
-        }
+        int vertices = edges.size();
+        boolean[] dead = new boolean[vertices];
+        // a vertex is part of the current partition iff its stamp equals the current epoch,
+        // so the membership information never has to be cleared between partitions
+        int[] stamp = new int[vertices];
+        int epoch = 0;
+        // the name of a vertex in the subgraph induced by the partition it was last added to
+        int[] renamed = new int[vertices];
 
-        Set<ContractedEdge<T, E>> corruptedEdges = new HashSet<>();
+        BitSet corruptedEdges = new BitSet(edgeCount);
         List<Graph<RenamedEdge<T, ContractedEdge<T, E>>>> partitions = new ArrayList<>();
+        // a single soft heap is used for all partitions, it is empty after each of them
+        SoftHeap<IndexedEdge<T, ContractedEdge<T, E>>> softHeap = SoftHeap.naturallyOrdered(errorRate);
 
         // For each vertex find a partition that they are part of
-        for (int current = 0; current < edges.size(); ++current) {
+        for (int current = 0; current < vertices; ++current) {
             if (dead[current])
                 continue;
 
             Logger.logf("Growing partition for vertex %s", current);
+            epoch++;
+            softHeap.clear();
+            EdgeList<RenamedEdge<T, ContractedEdge<T, E>>> partitionEdges = new EdgeList<>();
+            int partitionSize = 0;
+
             dead[current] = true;
-            SoftPriorityQueue<ContractedEdge<T, E>> softHeap = SoftHeap.naturallyOrdered(errorRate);
+            stamp[current] = epoch;
+            renamed[current] = partitionSize++;
             edges.get(current).forEach(softHeap::insert);
 
-            Set<Integer> currentPartition = new HashSet<>();
-            EdgeList<ContractedEdge<T, E>> partitionEdges = new EdgeList<>();
-            currentPartition.add(current);
             // Grow the current partition as long as it is smaller than
             // max size and doesn't contain a dead (visited) vertex
-            while (currentPartition.size() < maxsize) {
-            	Logger.logf("Current partition: %s", currentPartition);
-                ContractedEdge<T, E> minEdge = softHeap.pop();
-                Logger.logf("min edge: %s", minEdge);
+            grow:
+            while (partitionSize < maxsize) {
+                IndexedEdge<T, ContractedEdge<T, E>> minEdge;
                 // Extract the minimum Edge leading to a Vertex 
                 // which is not part of the current partition
-                while (currentPartition.contains(minEdge.to())) {
+                while (true) {
+                    // the whole component is part of the current partition
+                    if (softHeap.empty())
+                        break grow;
+                    minEdge = softHeap.pop();
+                    if (stamp[minEdge.to()] != epoch)
+                        break;
                     // In case the edge doesn't lead to a new vertex
                     // it is part of the subgraph induced by the 
                     // current partition
-                 	Logger.logf("Adding %s to partitionEdges.", minEdge);
-                    partitionEdges.append(minEdge);
-                    minEdge = softHeap.pop();
+                    partitionEdges.append(rename(minEdge, renamed));
                 }
-                currentPartition.add(minEdge.to());
-                partitionEdges.append(minEdge);
-                if (dead[minEdge.to()]) {
+                int next = minEdge.to();
+                stamp[next] = epoch;
+                renamed[next] = partitionSize++;
+                partitionEdges.append(rename(minEdge, renamed));
+                if (dead[next]) {
                     break;
                 }
-                for (ContractedEdge<T, E> edge : edges.get(minEdge.to())) {
-                	if (!currentPartition.contains(edge.to()))
-                		softHeap.insert(edge);
+                for (IndexedEdge<T, ContractedEdge<T, E>> edge : edges.get(next)) {
+                    if (stamp[edge.to()] != epoch)
+                        softHeap.insert(edge);
                 }
-                dead[minEdge.to()] = true;
+                dead[next] = true;
             }
             // Append the remaining edges with exactly one endpoint in
             // the current partition to the list of corrupted edges
             // and add all of the other edges to the list of edges that 
             // are part of the subgraph induced by the current partition
-            while (softHeap.size() > 0) {
-                ContractedEdge<T, E> minEdge = softHeap.pop();
-                if (!currentPartition.contains(minEdge.to())) { 
-                	if(softHeap.corrupted().contains(minEdge)) {
-                		corruptedEdges.add(minEdge);
-                	}
+            while (!softHeap.empty()) {
+                // the soft heap forgets about the corruption of an element once it is popped
+                boolean corrupted = softHeap.peekCorrupted();
+                IndexedEdge<T, ContractedEdge<T, E>> minEdge = softHeap.pop();
+                if (stamp[minEdge.to()] != epoch) {
+                    if (corrupted) {
+                        corruptedEdges.set(minEdge.index);
+                    }
                 } else {
-                    Logger.logf("Adding %s to partitionEdges.", minEdge);
-                    partitionEdges.append(minEdge);
+                    partitionEdges.append(rename(minEdge, renamed));
                 }
             }
             // Add the subgraph to our list of subgraphs
-            partitions.add(Graphs.renameVertices(partitionEdges));
+            partitions.add(new Graph<>(partitionSize, partitionEdges));
         }
-        return new PartitionWrapper<>(partitions, corruptedEdges);
+        LevelStatistics statistics = new LevelStatistics(edgeCount, errorRate, softHeap, corruptedEdges.cardinality());
+        return new PartitionWrapper<>(partitions, corruptedEdges, statistics);
+    }
+
+    private static <T, E extends DirectedEdge<T, E> & Comparable<? super E>>
+            RenamedEdge<T, ContractedEdge<T, E>> rename(IndexedEdge<T, ContractedEdge<T, E>> edge, int[] renamed) {
+        return new RenamedEdge<>(renamed[edge.from()], renamed[edge.to()], edge.edge);
     }
 
     public static final class PartitionWrapper<T, E extends DirectedEdge<T, E> & Comparable<? super E>> {
         final List<Graph<RenamedEdge<T, ContractedEdge<T, E>>>> subGraphs;
-        final Set<ContractedEdge<T, E>> corruptedEdges;
+        // the ids of all corrupted edges
+        final BitSet corruptedEdges;
+        final LevelStatistics statistics;
 
-        PartitionWrapper(List<Graph<RenamedEdge<T, ContractedEdge<T, E>>>> subGraphs, Set<ContractedEdge<T, E>> corruptedEdges) {
+        PartitionWrapper(List<Graph<RenamedEdge<T, ContractedEdge<T, E>>>> subGraphs, BitSet corruptedEdges,
+                         LevelStatistics statistics) {
             this.subGraphs = subGraphs;
             this.corruptedEdges = corruptedEdges;
+            this.statistics = statistics;
+        }
+    }
+
+    /**
+     * What the soft heap has done while partitioning a single level, see {@link SoftHeap#inserts} and the other
+     * counters of the soft heap.
+     */
+    public static final class LevelStatistics {
+        /** the number of edges of the level */
+        public final int edges;
+        /** the error rate of the soft heap */
+        public final double errorRate;
+        public final long inserts;
+        public final long sifts;
+        public final long corruptions;
+        public final long carPooled;
+        public final int largestCarPool;
+        /** the number of corrupted edges that leave their partition and are passed on to the next level */
+        public final int corruptedEdges;
+
+        LevelStatistics(int edges, double errorRate, SoftHeap<?> softHeap, int corruptedEdges) {
+            this.edges = edges;
+            this.errorRate = errorRate;
+            inserts = softHeap.inserts();
+            sifts = softHeap.sifts();
+            corruptions = softHeap.corruptions();
+            carPooled = softHeap.carPooled();
+            largestCarPool = softHeap.largestCarPool();
+            this.corruptedEdges = corruptedEdges;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s edges, error rate %s: %s inserts, %s sifts, %s corruptions, %s car-pooled, "
+                                 + "largest car pool %s, %s corrupted edges passed on", edges, errorRate, inserts,
+                                 sifts, corruptions, carPooled, largestCarPool, corruptedEdges);
         }
     }
 }
@@ -5,15 +5,87 @@ import util.graph.EdgeList;
 import util.graph.edge.DirectedEdge;
 import util.queue.ExtendedPriorityQueue;
 import util.queue.FibonacciHeap;
+import util.queue.IndexedBucketQueue;
+import util.queue.IndexedDAryHeap;
+import util.queue.IndexedPriorityQueue;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
 
 public final class PrimMST {
 
+    // the number of children per node of the primitive heap, four keeps a node's children within a cache line
+    static final int HEAP_ARITY = 4;
+
+    /**
+     * The primitive queue used by default, indexed by the vertices of the graph.
+     */
+    static final IntFunction<IndexedPriorityQueue> DEFAULT_QUEUE = vertices -> new IndexedDAryHeap(HEAP_ARITY, vertices);
+
+    // the largest range of integral keys, relative to the number of edges, for which the bucket queue is used
+    static final int BUCKETS_PER_EDGE = 4;
+
+    private static volatile IntFunction<? extends IndexedPriorityQueue> queues = DEFAULT_QUEUE;
+    private static volatile boolean buckets = false;
+
+    /**
+     * Sets the primitive queue used whenever no queue is passed explicitly.
+     * @param queues creates the queue for a given number of vertices
+     */
+    public static void setQueue(IntFunction<? extends IndexedPriorityQueue> queues) {
+        PrimMST.queues = Objects.requireNonNull(queues);
+    }
+
+    /**
+     * Sets whether {@link #compute(int, Iterable)} uses an {@link IndexedBucketQueue} for integral weights. This is
+     * off by default: Prim's queue only holds the vertices next to the tree, which a d-ary heap keeps in the cache,
+     * while the buckets for the whole range of weights don't fit there, so the bucket queue is no faster in practice.
+     * @param enabled true iff the bucket queue shall be used
+     */
+    public static void setBucketQueue(boolean enabled) {
+        buckets = enabled;
+    }
+
+    /**
+     * Computes the minimum spanning forest. Numeric weights are compared as primitive keys, see {@link #compute(int,
+     * Iterable, ToLongFunction)}. If the bucket queue has been enabled by {@link #setBucketQueue} and all weights are
+     * integral, the keys are the weights themselves and, as long as they span a range of at most a few keys per edge,
+     * the queue is an {@link IndexedBucketQueue}. Other weights are compared by a {@link FibonacciHeap}.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param vertices the number of vertices
+     * @param edges the edges of the graph
+     * @return the edges of the minimum spanning forest
+     */
     public static <T extends Comparable<? super T>, E extends DirectedEdge<T, E>> EdgeList<E> compute(int vertices, Iterable<E> edges) {
+        if (buckets) {
+            ToLongFunction<E> integral = EdgeKeys.integral(edges);
+            if (integral != null) {
+                long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+                int count = 0;
+                for (E e : edges) {
+                    long k = integral.applyAsLong(e);
+                    min = Math.min(min, k);
+                    max = Math.max(max, k);
+                    count++;
+                }
+                // the difference overflows for keys that are too far apart
+                long range = max - min;
+                if (count > 0 && range >= 0 && range < (long) BUCKETS_PER_EDGE * count) {
+                    long minKey = min, maxKey = max;
+                    return compute(vertices, edges, integral, n -> new IndexedBucketQueue(n, minKey, maxKey));
+                }
+            }
+        }
+
+        ToLongFunction<E> key = EdgeKeys.exact(edges);
+        if (key != null)
+            return compute(vertices, edges, key);
 
         boolean[] visited = new boolean[vertices];
 
@@ -30,9 +102,11 @@ public final class PrimMST {
         Comparator<Integer> nullsLast = Comparator.comparing(distances::get, Comparator.nullsLast(T::compareTo));
         ExtendedPriorityQueue<Integer> queue = new FibonacciHeap<>(nullsLast);
 
-        long[] ids = new long[vertices];
+        // the vertices get consecutive ids, so the id of a vertex is its offset from the first one
+        List<Integer> all = new ArrayList<>(vertices);
         for (int i = 0; i < vertices; i++)
-            ids[i] = queue.insertWithId(i);
+            all.add(i);
+        long first = queue.insertAll(all);
 
         while (!queue.empty()) {
             int vertex = queue.pop();
@@ -43,7 +117,7 @@ public final class PrimMST {
                     if (distances.get(e.to()) == null || distances.get(e.to()).compareTo(e.weight()) > 0) {
                         distances.set(e.to(), e.weight());
                         lightest.set(e.to(), e);
-                        queue.decrease(ids[e.to()]);
+                        queue.decrease(first + e.to());
                     }
                 }
             }
@@ -53,4 +127,109 @@ public final class PrimMST {
         lightest.stream().filter(Objects::nonNull).forEach(result::append);
         return result;
     }
+
+    /**
+     * Computes the minimum spanning forest with the queue set by {@link #setQueue}, by default an
+     * {@link IndexedDAryHeap}, which compares the primitive keys of the edges instead of their weights.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param vertices the number of vertices
+     * @param edges the edges of the graph
+     * @param key the key of each edge, has to order the edges like their weights
+     * @return the edges of the minimum spanning forest
+     */
+    public static <T, E extends DirectedEdge<T, E>> EdgeList<E> compute(int vertices, Iterable<E> edges,
+                                                                       ToLongFunction<? super E> key) {
+        return compute(vertices, edges, key, queues);
+    }
+
+    /**
+     * Computes the minimum spanning forest with a primitive queue over the vertices, which compares the primitive
+     * keys of the edges instead of their weights. Each tree of the forest is grown from the first vertex that hasn't
+     * been reached yet, so only vertices that have been reached are ever in the queue. The roots are never inserted,
+     * so the queue only ever sees the keys of edges.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param vertices the number of vertices
+     * @param edges the edges of the graph
+     * @param key the key of each edge, has to order the edges like their weights
+     * @param queues creates the queue for a given number of vertices
+     * @return the edges of the minimum spanning forest
+     */
+    public static <T, E extends DirectedEdge<T, E>> EdgeList<E> compute(int vertices, Iterable<E> edges,
+                                                                       ToLongFunction<? super E> key,
+                                                                       IntFunction<? extends IndexedPriorityQueue> queues) {
+
+        boolean[] visited = new boolean[vertices];
+        List<E> lightest = new ArrayList<>(Collections.nCopies(vertices, null));
+
+        AdjacencyList<E> adjacency = AdjacencyList.of(vertices, edges);
+        IndexedPriorityQueue queue = queues.apply(vertices);
+        EdgeList<E> result = new EdgeList<>();
+
+        for (int root = 0; root < vertices; root++) {
+            if (visited[root])
+                continue;
+
+            int vertex = root;
+            while (true) {
+                visited[vertex] = true;
+                if (lightest.get(vertex) != null)
+                    result.append(lightest.get(vertex));
+
+                for (E e : adjacency.get(vertex)) {
+                    if (!visited[e.to()] && queue.offer(e.to(), key.applyAsLong(e)))
+                        lightest.set(e.to(), e);
+                }
+
+                if (queue.empty())
+                    break;
+                vertex = queue.pop();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the minimum spanning forest like {@link #compute}, but finds the next vertex by scanning an array
+     * instead of using a heap. This takes O(n^2 + m) time, which beats the heap on small, dense graphs.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param vertices the number of vertices
+     * @param edges the edges of the graph
+     * @return the edges of the minimum spanning forest
+     */
+    public static <T, E extends DirectedEdge<T, E> & Comparable<? super E>> EdgeList<E> computeDense(int vertices, Iterable<E> edges) {
+
+        boolean[] visited = new boolean[vertices];
+
+        List<E> lightest = new ArrayList<>(vertices);
+        for (int i = 0; i < vertices; i++)
+            lightest.add(null);
+
+        AdjacencyList<E> adjacency = AdjacencyList.of(vertices, edges);
+        EdgeList<E> result = new EdgeList<>();
+
+        for (int step = 0; step < vertices; step++) {
+            // find the closest unvisited vertex or start a new tree if no unvisited vertex can be reached
+            int vertex = -1;
+            for (int v = 0; v < vertices; v++) {
+                if (visited[v])
+                    continue;
+                E candidate = lightest.get(v);
+                if (vertex == -1 || lightest.get(vertex) == null
+                        || (candidate != null && candidate.compareTo(lightest.get(vertex)) < 0))
+                    vertex = v;
+            }
+            visited[vertex] = true;
+            if (lightest.get(vertex) != null)
+                result.append(lightest.get(vertex));
+
+            for (E e : adjacency.get(vertex)) {
+                if (!visited[e.to()] && (lightest.get(e.to()) == null || lightest.get(e.to()).compareTo(e) > 0))
+                    lightest.set(e.to(), e);
+            }
+        }
+        return result;
+    }
 }
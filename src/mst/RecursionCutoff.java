@@ -0,0 +1,71 @@
+package mst;
+
+import util.graph.EdgeList;
+import util.graph.edge.DirectedEdge;
+
+/**
+ * Describes when the recursive MST algorithms stop contracting the graph and hand it to a simple algorithm instead.
+ * Once a graph has at most {@link #edges} edges, it is solved by {@link PrimMST#computeDense} if it has at least
+ * {@link #density} edges per vertex and by {@link KruskalMST} otherwise.
+ */
+public final class RecursionCutoff {
+
+    /**
+     * The thresholds used by default, taken from a benchmark sweep over random graphs.
+     */
+    public static final RecursionCutoff DEFAULT = new RecursionCutoff(2048, 12);
+    /**
+     * Never hands a graph to another algorithm.
+     */
+    public static final RecursionCutoff NONE = new RecursionCutoff(0, Double.POSITIVE_INFINITY);
+
+    /**
+     * The number of edges up to which a graph is handed to a simple algorithm.
+     */
+    public final int edges;
+    /**
+     * The number of edges per vertex from which on a graph counts as dense.
+     */
+    public final double density;
+
+    /**
+     * Creates a new cutoff.
+     * @param edges the number of edges up to which a graph is handed to a simple algorithm
+     * @param density the number of edges per vertex from which on {@link PrimMST#computeDense} is preferred over
+     * {@link KruskalMST}
+     */
+    public RecursionCutoff(int edges, double density) {
+        if (edges < 0 || density < 0)
+            throw new IllegalArgumentException("Thresholds must not be negative.");
+        this.edges = edges;
+        this.density = density;
+    }
+
+    /**
+     * Returns whether a graph with the given number of edges should be handed to {@link #solve}.
+     * @param edgeCount the number of edges of the graph
+     * @return true if the graph is small enough
+     */
+    public boolean applies(int edgeCount) {
+        return edgeCount <= edges;
+    }
+
+    /**
+     * Computes the minimum spanning forest of a graph with the algorithm that suits its density.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the edges
+     * @param vertices the number of vertices
+     * @param edges the edges of the graph
+     * @return the edges of the minimum spanning forest
+     */
+    public <T, E extends DirectedEdge<T, E> & Comparable<? super E>> EdgeList<E> solve(int vertices, EdgeList<E> edges) {
+        if (edges.size() >= density * vertices)
+            return PrimMST.computeDense(vertices, edges);
+        return KruskalMST.compute(vertices, edges);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RecursionCutoff(edges=%s, density=%s)", edges, density);
+    }
+}
@@ -0,0 +1,271 @@
+package util.decision;
+
+import util.graph.edge.DirectedEdge;
+import util.graph.edge.WeightedEdge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A relabeling of the vertices of a small graph that maps all isomorphic graphs to the same canonical graph.<br>
+ * A simple graph on at most {@link #MAX_VERTICES} vertices is represented by a bit mask over the pairs of its
+ * vertices, where the pair (i, j) with i &lt; j corresponds to bit j * (j - 1) / 2 + i. This is the order in which
+ * {@link Iterators#ascendingIntPairs} enumerates the pairs. The canonical mask of a graph is the smallest mask that
+ * any relabeling of its vertices produces, so two graphs are isomorphic iff their canonical masks are equal.
+ */
+final class CanonicalLabeling {
+
+    static final int MAX_VERTICES = 8;
+
+    // the endpoints of the pair that corresponds to each bit
+    private static final int[] FIRST = new int[MAX_VERTICES * (MAX_VERTICES - 1) / 2];
+    private static final int[] SECOND = new int[MAX_VERTICES * (MAX_VERTICES - 1) / 2];
+
+    static {
+        int bit = 0;
+        for (int j = 1; j < MAX_VERTICES; j++) {
+            for (int i = 0; i < j; i++) {
+                FIRST[bit] = i;
+                SECOND[bit] = j;
+                bit++;
+            }
+        }
+    }
+
+    // the canonical mask of the graph
+    final long mask;
+    // relabeling[v] is the canonical label of vertex v
+    private final int[] relabeling;
+
+    private CanonicalLabeling(long mask, int[] relabeling) {
+        this.mask = mask;
+        this.relabeling = relabeling;
+    }
+
+    /**
+     * Returns the bit that corresponds to the pair of vertices i and j.
+     * @param i the first vertex
+     * @param j the second vertex
+     * @return the bit of the pair
+     */
+    static int pair(int i, int j) {
+        return i < j ? j * (j - 1) / 2 + i : i * (i - 1) / 2 + j;
+    }
+
+    /**
+     * Returns the mask of a simple graph.
+     * @param <E> the edge type of the graph
+     * @param edges the edges of the graph
+     * @return the mask of the graph
+     * @throws IllegalArgumentException if the graph contains self-loops or multiple edges between two vertices
+     */
+    static <E extends DirectedEdge<?, E>> long maskOf(Iterable<E> edges) {
+        long mask = 0;
+        for (E e : edges) {
+            if (e.from() == e.to())
+                throw new IllegalArgumentException("Self-loops are not supported.");
+            long bit = 1L << pair(e.from(), e.to());
+            if ((mask & bit) != 0)
+                throw new IllegalArgumentException("Multigraphs are not supported.");
+            mask |= bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the edges of a mask ordered by their bit, as needed for the precomputation of decision trees.
+     * @param mask the mask of the graph
+     * @return the edges of the graph, each with weight 0
+     */
+    static List<WeightedEdge<Integer>> edgesOf(long mask) {
+        List<WeightedEdge<Integer>> edges = new ArrayList<>();
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            int bit = Long.numberOfTrailingZeros(rest);
+            edges.add(new WeightedEdge<>(FIRST[bit], SECOND[bit], 0));
+        }
+        return edges;
+    }
+
+    // applies the relabeling to every edge of the mask
+    private static long relabel(long mask, int[] relabeling) {
+        long image = 0;
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            int bit = Long.numberOfTrailingZeros(rest);
+            image |= 1L << pair(relabeling[FIRST[bit]], relabeling[SECOND[bit]]);
+        }
+        return image;
+    }
+
+    /**
+     * Computes the canonical labeling of a graph by trying all relabelings of its vertices.
+     * @param vertices the number of vertices of the graph
+     * @param mask the mask of the graph
+     * @return the canonical labeling of the graph
+     */
+    static CanonicalLabeling of(int vertices, long mask) {
+        checkSize(vertices);
+        int[] relabeling = identity(vertices);
+        int[] best = relabeling.clone();
+        long min = mask;
+
+        // enumerate all permutations with Heap's algorithm
+        int[] counter = new int[vertices];
+        for (int i = 1; i < vertices;) {
+            if (counter[i] < i) {
+                swap(relabeling, i % 2 == 0 ? 0 : counter[i], i);
+                long image = relabel(mask, relabeling);
+                if (image < min) {
+                    min = image;
+                    best = relabeling.clone();
+                }
+                counter[i]++;
+                i = 1;
+            } else {
+                counter[i] = 0;
+                i++;
+            }
+        }
+        return new CanonicalLabeling(min, best);
+    }
+
+    /**
+     * Stores the canonical labeling of every graph that is isomorphic to the given canonical graph in a table indexed
+     * by the masks of these graphs, so that looking up a labeling later on doesn't require any search.
+     * @param vertices the number of vertices of the graph
+     * @param canonical the canonical mask of the isomorphism class
+     * @param table the table to fill, must have a length of 2^(vertices * (vertices - 1) / 2)
+     */
+    static void fillOrbit(int vertices, long canonical, CanonicalLabeling[] table) {
+        checkSize(vertices);
+        int[] relabeling = identity(vertices);
+        table[(int) canonical] = new CanonicalLabeling(canonical, relabeling.clone());
+
+        int[] counter = new int[vertices];
+        for (int i = 1; i < vertices;) {
+            if (counter[i] < i) {
+                swap(relabeling, i % 2 == 0 ? 0 : counter[i], i);
+                int image = (int) relabel(canonical, relabeling);
+                // automorphisms map several relabelings to the same graph, any of them will do
+                if (table[image] == null)
+                    table[image] = new CanonicalLabeling(canonical, inverse(relabeling));
+                counter[i]++;
+                i = 1;
+            } else {
+                counter[i] = 0;
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Returns whether a mask is the canonical mask of its isomorphism class. Most masks aren't, so this stops
+     * as soon as a smaller relabeling has been found.
+     * @param vertices the number of vertices of the graph
+     * @param mask the mask of the graph
+     * @return true iff no relabeling produces a smaller mask
+     */
+    static boolean isCanonical(int vertices, long mask) {
+        checkSize(vertices);
+        int[] relabeling = identity(vertices);
+        int[] counter = new int[vertices];
+        for (int i = 1; i < vertices;) {
+            if (counter[i] < i) {
+                swap(relabeling, i % 2 == 0 ? 0 : counter[i], i);
+                if (relabel(mask, relabeling) < mask)
+                    return false;
+                counter[i]++;
+                i = 1;
+            } else {
+                counter[i] = 0;
+                i++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the automorphisms of a graph other than the identity as permutations of its edges, which are numbered
+     * in the order of their bits like in {@link #edgesOf}: automorphism[k] is the number of the edge that the k-th
+     * edge is mapped to. Relabelings that only differ in vertices without edges yield the same permutation once.
+     * @param vertices the number of vertices of the graph
+     * @param mask the mask of the graph
+     * @return the distinct edge permutations of the automorphisms except the identity
+     */
+    static List<int[]> edgeAutomorphisms(int vertices, long mask) {
+        checkSize(vertices);
+        Set<List<Integer>> distinct = new HashSet<>();
+        List<int[]> automorphisms = new ArrayList<>();
+        int[] relabeling = identity(vertices);
+        int[] counter = new int[vertices];
+        for (int i = 1; i < vertices;) {
+            if (counter[i] < i) {
+                swap(relabeling, i % 2 == 0 ? 0 : counter[i], i);
+                if (relabel(mask, relabeling) == mask) {
+                    int[] automorphism = new int[Long.bitCount(mask)];
+                    List<Integer> key = new ArrayList<>(automorphism.length);
+                    boolean identity = true;
+                    int k = 0;
+                    for (long rest = mask; rest != 0; rest &= rest - 1, k++) {
+                        int bit = Long.numberOfTrailingZeros(rest);
+                        int image = pair(relabeling[FIRST[bit]], relabeling[SECOND[bit]]);
+                        automorphism[k] = Long.bitCount(mask & ((1L << image) - 1));
+                        identity &= automorphism[k] == k;
+                        key.add(automorphism[k]);
+                    }
+                    if (!identity && distinct.add(key))
+                        automorphisms.add(automorphism);
+                }
+                counter[i]++;
+                i = 1;
+            } else {
+                counter[i] = 0;
+                i++;
+            }
+        }
+        return automorphisms;
+    }
+
+    /**
+     * Arranges the edges of the labeled graph in the order of the bits of the canonical mask, which is the order
+     * the decision tree of the canonical graph refers to.
+     * @param <E> the edge type of the graph
+     * @param edges the edges of the graph this labeling has been computed for
+     * @return the same edges in canonical order
+     */
+    <E extends DirectedEdge<?, E>> List<E> arrange(List<E> edges) {
+        List<E> arranged = new ArrayList<>(Collections.nCopies(edges.size(), null));
+        for (E e : edges) {
+            int bit = pair(relabeling[e.from()], relabeling[e.to()]);
+            arranged.set(Long.bitCount(mask & ((1L << bit) - 1)), e);
+        }
+        return arranged;
+    }
+
+    private static void checkSize(int vertices) {
+        if (vertices > MAX_VERTICES)
+            throw new IllegalArgumentException("Canonical labelings are limited to " + MAX_VERTICES + " vertices.");
+    }
+
+    private static int[] identity(int vertices) {
+        int[] identity = new int[vertices];
+        for (int v = 0; v < vertices; v++)
+            identity[v] = v;
+        return identity;
+    }
+
+    private static int[] inverse(int[] permutation) {
+        int[] inverse = new int[permutation.length];
+        for (int v = 0; v < permutation.length; v++)
+            inverse[permutation[v]] = v;
+        return inverse;
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+}
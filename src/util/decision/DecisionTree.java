@@ -1,55 +1,150 @@
 package util.decision;
 
-import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.stream.StreamSupport;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
 
-final class DecisionTree implements Serializable {
-
-    private static final long serialVersionUID = 1L;
+final class DecisionTree implements DecisionTreeCompiler.Classifier {
 
     // internally, we represent a decision tree (quite similar to a binary heap) by an array of nodes
-    // each describing a comparison between two edges
-    private final Comparison[] comparisons;
+    // each describing a comparison between two edges: node i compares the edges pairs[2 * i] and pairs[2 * i + 1].
+    // The structures the trees are computed for have less than 128 edges, so a byte per index is enough
+    private final byte[] pairs;
+    private final int nodes;
 
     private DecisionTree(Comparison[] comparisons) {
-        this.comparisons = comparisons;
+        this.nodes = comparisons.length;
+        this.pairs = new byte[2 * nodes];
+        for (int i = 0; i < nodes; i++) {
+            pairs[2 * i] = (byte) comparisons[i].firstIndex;
+            pairs[2 * i + 1] = (byte) comparisons[i].secondIndex;
+        }
+    }
+
+    private DecisionTree(byte[] pairs) {
+        this.nodes = pairs.length / 2;
+        this.pairs = pairs;
+    }
+
+    /**
+     * Returns the depth of this tree.
+     * @return the depth of this tree, its number of buckets is 2^depth
+     */
+    int depth() {
+        return 31 - Integer.numberOfLeadingZeros(nodes + 1);
+    }
+
+    /**
+     * Returns the number of inner nodes of this tree.
+     * @return the number of comparisons of this tree, 2^depth - 1
+     */
+    int nodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the index of the element that a node compares on its left-hand side.
+     * @param node the index of the node
+     * @return the index of the first element of the comparison
+     */
+    int first(int node) {
+        return pairs[2 * node];
+    }
+
+    /**
+     * Returns the index of the element that a node compares on its right-hand side.
+     * @param node the index of the node
+     * @return the index of the second element of the comparison
+     */
+    int second(int node) {
+        return pairs[2 * node + 1];
+    }
+
+    /**
+     * Writes this tree as its depth followed by the pairs of edge indices of its nodes, one byte each.
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+    void encode(DataOutput out) throws IOException {
+        out.writeByte(depth());
+        out.write(pairs);
+    }
+
+    /**
+     * Reads a tree written by {@link #encode} from an absolute position of a buffer.
+     * @param buffer the buffer to read from, its position is left unchanged
+     * @param offset the position of the tree in the buffer
+     * @return the tree
+     */
+    static DecisionTree decode(ByteBuffer buffer, int offset) {
+        int depth = buffer.get(offset);
+        byte[] pairs = new byte[2 * ((1 << depth) - 1)];
+        for (int i = 0; i < pairs.length; i++)
+            pairs[i] = buffer.get(offset + 1 + i);
+        return new DecisionTree(pairs);
+    }
+
+    /**
+     * Returns the number of bytes written by {@link #encode}.
+     * @return the size of the encoded tree
+     */
+    int encodedSize() {
+        return 1 + pairs.length;
     }
 
     private int indexToBucket(int index) {
-        return index - comparisons.length;
+        return index - nodes;
     }
 
     public <E extends Comparable<? super E>> int classify(List<E> elements) {
 
         int index = 0;
-        while (index < comparisons.length) {
-            Comparison c = comparisons[index];
-            E first = elements.get(c.firstIndex);
-            E second = elements.get(c.secondIndex);
-            // if first < second
-            if (first.compareTo(second) < 0) {
-                // go to left child
-                index = 2 * index + 1;
-            } else {
-                // go to right child
-                index = 2 * index + 2;
-            }
+        while (index < nodes) {
+            E first = elements.get(pairs[2 * index]);
+            E second = elements.get(pairs[2 * index + 1]);
+            // if first < second go to the left child, otherwise go to the right child
+            index = 2 * index + (first.compareTo(second) < 0 ? 1 : 2);
         }
         return indexToBucket(index);
     }
 
-    // represents a comparison between edges
-    private static class Comparison implements Serializable {
-        private static final long serialVersionUID = 1L;
+    /**
+     * Classifies the elements by comparing primitive keys instead of the elements themselves. The keys must be
+     * consistent with the natural order of the elements, i.e. keys[i] &lt; keys[j] implies that element i is smaller
+     * than element j. Only if two keys are neither smaller nor greater than each other (ties and NaNs) the
+     * elements are compared, so the result is the same as the one of {@link #classify(List)}.
+     * @param <E> the type of the elements
+     * @param elements the elements that are classified
+     * @param keys keys[i] is the key of the i-th element
+     * @return the bucket of the elements
+     */
+    @Override
+    public <E extends Comparable<? super E>> int classify(List<E> elements, double[] keys) {
 
+        int index = 0;
+        while (index < nodes) {
+            int first = pairs[2 * index];
+            int second = pairs[2 * index + 1];
+            double a = keys[first];
+            double b = keys[second];
+            boolean less = a < b || (!(a > b) && elements.get(first).compareTo(elements.get(second)) < 0);
+            index = 2 * index + (less ? 1 : 2);
+        }
+        return indexToBucket(index);
+    }
+
+    // represents a comparison between edges while a tree is constructed
+    private static class Comparison {
         final int firstIndex;
         final int secondIndex;
+        // the bit of the pair in a comparison signature
+        final int bit;
 
         private Comparison(int firstIndex, int secondIndex) {
             this.firstIndex = firstIndex;
             this.secondIndex = secondIndex;
+            this.bit = CanonicalLabeling.pair(firstIndex, secondIndex);
         }
     }
 
@@ -60,13 +155,13 @@ final class DecisionTree implements Serializable {
         if (level > 0)
             sb.append("\u2514 ");
 
-        if (start >= comparisons.length) {
+        if (start >= nodes) {
             sb.append("Bucket(").append(indexToBucket(start)).append(")\n");
             return;
         }
 
-        sb.append("Comparison(").append(comparisons[start].firstIndex)
-                .append(" < ").append(comparisons[start].secondIndex).append(")\n");
+        sb.append("Comparison(").append(pairs[2 * start])
+                .append(" < ").append(pairs[2 * start + 1]).append(")\n");
 
         for (int i = 0; i < 2; i++) {
             int index = 2 * start + i + 1;
@@ -81,16 +176,411 @@ final class DecisionTree implements Serializable {
         return sb.toString();
     }
 
-    public static Iterable<DecisionTree> enumerateTrees(int depth, int edges) {
-        if (depth > 29)
-            throw new IllegalArgumentException("Unmanageable tree depth.");
-        int length = (1 << (depth + 1)) - 1;
+    /**
+     * The maximal number of elements whose comparison signature fits into a long.
+     */
+    static final int MAX_SIGNATURE_ELEMENTS = 11;
+
+    /**
+     * Constructs a decision tree of the given depth that tells apart all permutations with different outcomes.
+     * Instead of enumerating all trees, the tree is built top-down: each node tries the comparisons that split its
+     * permutations best first, and subtrees are pruned as soon as they cannot separate their outcomes anymore.
+     * @param depth the depth of the tree
+     * @param elements the number of elements that are compared
+     * @param signatures the comparison signature of each permutation: for i &lt; j, bit j * (j - 1) / 2 + i
+     * of signatures[p] is set iff element i is smaller than element j in the p-th permutation
+     * @param outcomes outcomes[p] is the outcome of the p-th permutation, a number between 0 and the number of outcomes
+     * @param bucketOutcomes receives the outcome of each bucket of the tree, must have a length of 2^depth
+     * @return a tree of the given depth or null if no such tree exists
+     */
+    public static DecisionTree construct(int depth, int elements, long[] signatures, int[] outcomes,
+                                         int[] bucketOutcomes) {
+        return new Searcher(elements, signatures, outcomes, Collections.emptyList()).construct(depth, bucketOutcomes);
+    }
+
+    /**
+     * Searches decision trees of increasing depth for the same permutations, see
+     * {@link #construct(int, int, long[], int[], int[])}.<br>
+     * The sets of permutations that have turned out not to be solvable at some depth are remembered across the
+     * searches. The symmetries of the elements, i.e. the permutations of the elements that map the set of all
+     * permutations and its outcomes onto itself, map a set of permutations that can't be solved at some depth to
+     * other sets that can't be solved either. So a failed set is remembered for all its images, and at each node only
+     * one comparison of each class of symmetric comparisons is tried.
+     */
+    static final class Searcher {
+        private final List<Comparison> candidates = new ArrayList<>();
+        private final int elements;
+        private final long[] signatures;
+        private final int[] outcomes;
+        private final List<int[]> symmetries;
+        private final FailureMemo failed = new FailureMemo();
+
+        /**
+         * Creates a new search for the given permutations.
+         * @param elements the number of elements that are compared
+         * @param signatures the comparison signature of each permutation
+         * @param outcomes the outcome of each permutation
+         * @param symmetries permutations of the elements, symmetry[e] is the element that e is mapped to. Two
+         * permutations that one of them maps onto each other must have outcomes that are equal iff they are equal for
+         * the images of any other two permutations
+         */
+        Searcher(int elements, long[] signatures, int[] outcomes, List<int[]> symmetries) {
+            if (elements > MAX_SIGNATURE_ELEMENTS)
+                throw new IllegalArgumentException("Too many elements.");
+            Iterators.ascendingIntPairs(elements, Comparison::new).forEach(candidates::add);
+            this.elements = elements;
+            this.signatures = signatures;
+            this.outcomes = outcomes;
+            this.symmetries = symmetries;
+        }
+
+        /**
+         * Constructs a decision tree of the given depth that tells apart all permutations with different outcomes.
+         * @param depth the depth of the tree
+         * @param bucketOutcomes receives the outcome of each bucket of the tree, must have a length of 2^depth
+         * @return a tree of the given depth or null if no such tree exists
+         */
+        DecisionTree construct(int depth, int[] bucketOutcomes) {
+            if (depth > 29)
+                throw new IllegalArgumentException("Unmanageable tree depth.");
+            if (bucketOutcomes.length != 1 << depth)
+                throw new IllegalArgumentException("There must be exactly one outcome per bucket.");
+
+            Comparison[] comparisons = new Comparison[(1 << depth) - 1];
+            int[] all = new int[signatures.length];
+            for (int p = 0; p < all.length; p++)
+                all[p] = p;
+
+            Search search = new Search(signatures, outcomes, candidates, symmetries, comparisons, bucketOutcomes,
+                                       failed);
+            return search.solve(0, depth, all, new int[elements], symmetries) ? new DecisionTree(comparisons) : null;
+        }
+    }
+
+    /**
+     * Returns the minimal depth of a tree that tells apart the given number of outcomes.
+     * @param outcomes the number of different outcomes
+     * @return the binary logarithm of outcomes, rounded up
+     */
+    public static int lowerBound(int outcomes) {
+        return outcomes <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(outcomes - 1);
+    }
+
+    // the state of a depth-bounded search for a decision tree
+    private static final class Search {
+        private final long[] signatures;
+        private final int[] outcomes;
+        private final List<Comparison> candidates;
+        private final List<int[]> symmetries;
+        private final Comparison[] comparisons;
+        private final int[] bucketOutcomes;
+
+        // used to collect the distinct outcomes without clearing a set: outcome o has been seen iff seen[o] == epoch
+        private final int[] seen;
+        private final int[] distinctOutcomes;
+        private int epoch = 0;
+        // for each distinct outcome of a set of permutations, the comparisons that hold for some of its permutations
+        // and those that fail for some of them, as bits of a comparison signature. They rate all comparisons with a
+        // single pass over the permutations
+        private final long[] holds;
+        private final long[] fails;
+        // the greatest depth for which a set of permutations has been shown not to be solvable. The same set is
+        // reached again whenever the same comparisons are made in a different order or symmetric comparisons are
+        // made, so this saves most of the work
+        private final FailureMemo failed;
+
+        Search(long[] signatures, int[] outcomes, List<Comparison> candidates, List<int[]> symmetries,
+               Comparison[] comparisons, int[] bucketOutcomes, FailureMemo failed) {
+            this.failed = failed;
+            this.signatures = signatures;
+            this.outcomes = outcomes;
+            this.candidates = candidates;
+            this.symmetries = symmetries;
+            this.comparisons = comparisons;
+            this.bucketOutcomes = bucketOutcomes;
+            int max = 0;
+            for (int o : outcomes)
+                max = Math.max(max, o);
+            this.seen = new int[max + 1];
+            this.distinctOutcomes = new int[max + 1];
+            this.holds = new long[max + 1];
+            this.fails = new long[max + 1];
+        }
+
+        // collects the distinct outcomes of the permutations with the comparisons that hold or fail for each of them
+        // and returns their number
+        private int collect(int[] subset) {
+            epoch++;
+            int distinct = 0;
+            for (int p : subset) {
+                int o = outcomes[p];
+                if (seen[o] != epoch) {
+                    seen[o] = epoch;
+                    distinctOutcomes[distinct++] = o;
+                    holds[o] = 0;
+                    fails[o] = 0;
+                }
+                holds[o] |= signatures[p];
+                fails[o] |= ~signatures[p];
+            }
+            return distinct;
+        }
+
+        // whether the smaller side of the comparison rated last has at least as many distinct outcomes as the other
+        private boolean smallerWorse;
+
+        // returns the larger number of distinct outcomes on either side of the comparison
+        // or -1 if the comparison doesn't split the permutations at all, from the outcomes collected last
+        private int rate(int distinct, Comparison c) {
+            int left = 0, right = 0;
+            for (int k = 0; k < distinct; k++) {
+                int o = distinctOutcomes[k];
+                left += (int) (holds[o] >>> c.bit & 1);
+                right += (int) (fails[o] >>> c.bit & 1);
+            }
+            if (left == 0 || right == 0)
+                return -1;
+            smallerWorse = left >= right;
+            return Math.max(left, right);
+        }
+
+        private boolean less(int permutation, Comparison c) {
+            return (signatures[permutation] >>> c.bit & 1) != 0;
+        }
+
+        // tries to build the subtree rooted at index with the given depth for the given permutations. They are those
+        // that agree with the order the comparisons on the path to the subtree imply, where above[e] has the bit of
+        // every element that is known to be greater than element e. The fixing symmetries map them onto themselves
+        boolean solve(int index, int depth, int[] subset, int[] above, List<int[]> fixing) {
+            int distinct = collect(subset);
+            if (distinct <= 1) {
+                // all permutations agree: every bucket below this node gets their outcome
+                leaf(index, depth, subset.length == 0 ? 0 : outcomes[subset[0]]);
+                return true;
+            }
+            if (lowerBound(distinct) > depth)
+                return false;
+            long key = fingerprint(above);
+            if (failed.get(key) >= depth)
+                return false;
+
+            // rate every comparison by the larger number of outcomes it leaves on one side and sort the useful ones
+            // by their rating, keeping the order of the candidates among equal ratings
+            Comparison[] useful = new Comparison[candidates.size()];
+            int[] rating = new int[candidates.size()];
+            boolean[] smallerFirst = new boolean[candidates.size()];
+            int count = 0;
+            for (Comparison c : candidates) {
+                int worst = rate(distinct, c);
+                if (worst < 0 || lowerBound(worst) > depth - 1)
+                    continue;
+                int k = count++;
+                for (; k > 0 && rating[k - 1] > worst; k--) {
+                    useful[k] = useful[k - 1];
+                    rating[k] = rating[k - 1];
+                    smallerFirst[k] = smallerFirst[k - 1];
+                }
+                useful[k] = c;
+                rating[k] = worst;
+                smallerFirst[k] = smallerWorse;
+            }
+
+            // the bits of the comparisons that have failed
+            long tried = 0;
+            for (int k = 0; k < count; k++) {
+                Comparison c = useful[k];
+                if (symmetric(c, tried, fixing))
+                    continue;
+                tried |= 1L << c.bit;
+                // only the symmetries that fix both elements map either side of the comparison onto itself
+                List<int[]> fixingBoth = new ArrayList<>();
+                for (int[] symmetry : fixing)
+                    if (symmetry[c.firstIndex] == c.firstIndex && symmetry[c.secondIndex] == c.secondIndex)
+                        fixingBoth.add(symmetry);
+                int[][] split = split(subset, c);
+                // the side with more outcomes is more likely to fail, then the other one needn't be searched. Both
+                // sides fill all of their nodes, so the order doesn't change the tree
+                int first = smallerFirst[k] ? 0 : 1;
+                if (solveSide(index, depth, split, above, c, first, fixingBoth)
+                        && solveSide(index, depth, split, above, c, 1 - first, fixingBoth)) {
+                    comparisons[index] = c;
+                    return true;
+                }
+            }
+            failed.put(key, depth);
+            return false;
+        }
+
+        // returns whether a symmetry maps the comparison to one of the given ones. It maps the permutations on either
+        // side of the comparison to those on either side of the image, so both have a subtree of the same depth
+        private static boolean symmetric(Comparison c, long comparisons, List<int[]> symmetries) {
+            for (int[] symmetry : symmetries)
+                if ((comparisons >>> CanonicalLabeling.pair(symmetry[c.firstIndex], symmetry[c.secondIndex]) & 1) != 0)
+                    return true;
+            return false;
+        }
+
+        // solves the side of the comparison where its first element is smaller (0) or greater (1)
+        private boolean solveSide(int index, int depth, int[][] split, int[] above, Comparison c, int side,
+                                  List<int[]> fixing) {
+            int[] order = side == 0 ? order(above, c.firstIndex, c.secondIndex)
+                                    : order(above, c.secondIndex, c.firstIndex);
+            return solve(2 * index + 1 + side, depth - 1, split[side], order, fixing);
+        }
+
+        // returns the order after adding that the element smaller is smaller than the element larger
+        private static int[] order(int[] above, int smaller, int larger) {
+            int[] order = above.clone();
+            int greater = above[larger] | 1 << larger;
+            for (int e = 0; e < above.length; e++)
+                if (e == smaller || (above[e] >>> smaller & 1) != 0)
+                    order[e] |= greater;
+            return order;
+        }
+
+        // returns the fingerprint of an order. The order determines the permutations that agree with it, and the image
+        // of the order under a symmetry determines their images, so the smallest image of the order, as the masks of
+        // the pairs whose first or second element is known to be smaller, stands for all of them
+        private long fingerprint(int[] above) {
+            long minFirst = Long.MAX_VALUE, minSecond = Long.MAX_VALUE;
+            for (int s = -1; s < symmetries.size(); s++) {
+                int[] symmetry = s < 0 ? null : symmetries.get(s);
+                long first = 0, second = 0;
+                for (int e = 0; e < above.length; e++) {
+                    for (int rest = above[e]; rest != 0; rest &= rest - 1) {
+                        int f = Integer.numberOfTrailingZeros(rest);
+                        int i = symmetry == null ? e : symmetry[e];
+                        int j = symmetry == null ? f : symmetry[f];
+                        if (i < j)
+                            first |= 1L << CanonicalLabeling.pair(i, j);
+                        else
+                            second |= 1L << CanonicalLabeling.pair(i, j);
+                    }
+                }
+                if (first < minFirst || first == minFirst && second < minSecond) {
+                    minFirst = first;
+                    minSecond = second;
+                }
+            }
+            return FailureMemo.fingerprint(minFirst, minSecond);
+        }
+
+        private int[][] split(int[] subset, Comparison c) {
+            int smaller = 0;
+            for (int p : subset)
+                if (less(p, c))
+                    smaller++;
+            int[] left = new int[smaller];
+            int[] right = new int[subset.length - smaller];
+            int l = 0, r = 0;
+            for (int p : subset) {
+                if (less(p, c))
+                    left[l++] = p;
+                else
+                    right[r++] = p;
+            }
+            return new int[][] {left, right};
+        }
+
+        // fills the subtree rooted at index with arbitrary comparisons, all of its buckets lead to the same outcome
+        private void leaf(int index, int depth, int outcome) {
+            if (depth == 0) {
+                bucketOutcomes[index - comparisons.length] = outcome;
+                return;
+            }
+            comparisons[index] = candidates.get(0);
+            leaf(2 * index + 1, depth - 1, outcome);
+            leaf(2 * index + 2, depth - 1, outcome);
+        }
+    }
+
+    /**
+     * Remembers the depth up to which a set of permutations is known not to be solvable, see {@link Searcher}.<br>
+     * Keeping the sets themselves takes far too much memory for five vertices, so a set is only identified by a 64 bit
+     * fingerprint of the order that determines it and the memo is an open addressing table of at most 2^20 slots of
+     * 9 bytes each. Once it is full, a new set replaces the one in its home slot. A forgotten set is merely searched
+     * again. Two sets with the same fingerprint, which is unlikely among the few million sets a search visits, could
+     * only make the search miss a tree of the given depth, so the tree it returns would be deeper, but never wrong.
+     */
+    private static final class FailureMemo {
+        private static final int MAX_CAPACITY = 1 << 20;
+        // the number of slots looked at before a set replaces another one
+        private static final int PROBES = 8;
+
+        private long[] fingerprints = new long[1 << 10];
+        // the depth plus one, 0 marks an empty slot
+        private byte[] depths = new byte[1 << 10];
+        private int size = 0;
+
+        // combines the two masks of an order
+        static long fingerprint(long first, long second) {
+            return mix(mix(first) * 0x9E3779B97F4A7C15L + second);
+        }
+
+        // the finalizer of SplitMix64
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+        // returns the greatest depth at which the set with the fingerprint has failed or -1 if it isn't known
+        int get(long fingerprint) {
+            int mask = fingerprints.length - 1;
+            for (int probe = 0, slot = (int) fingerprint & mask; probe < PROBES; probe++, slot = (slot + 1) & mask) {
+                if (depths[slot] == 0)
+                    return -1;
+                if (fingerprints[slot] == fingerprint)
+                    return depths[slot] - 1;
+            }
+            return -1;
+        }
 
-        List<Comparison> comparisons = new ArrayList<>();
-        Iterators.ascendingIntPairs(edges, Comparison::new).forEach(comparisons::add);
+        void put(long fingerprint, int depth) {
+            while (!insert(fingerprint, depth)) {
+                if (fingerprints.length == MAX_CAPACITY) {
+                    replace(fingerprint, depth);
+                    return;
+                }
+                grow();
+            }
+            if (2 * size > fingerprints.length && fingerprints.length < MAX_CAPACITY)
+                grow();
+        }
 
-        return () -> StreamSupport.stream(Iterators.combinations(length, comparisons).spliterator(), false)
-            .map(l -> new DecisionTree(l.toArray(new Comparison[length])))
-            .iterator();
+        // stores the depth in the slot of the fingerprint or in a free slot, returns false if there is neither
+        private boolean insert(long fingerprint, int depth) {
+            int mask = fingerprints.length - 1;
+            for (int probe = 0, slot = (int) fingerprint & mask; probe < PROBES; probe++, slot = (slot + 1) & mask) {
+                if (depths[slot] == 0) {
+                    size++;
+                    fingerprints[slot] = fingerprint;
+                    depths[slot] = (byte) (depth + 1);
+                    return true;
+                }
+                if (fingerprints[slot] == fingerprint) {
+                    depths[slot] = (byte) Math.max(depths[slot], depth + 1);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void replace(long fingerprint, int depth) {
+            int home = (int) fingerprint & (fingerprints.length - 1);
+            fingerprints[home] = fingerprint;
+            depths[home] = (byte) (depth + 1);
+        }
+
+        private void grow() {
+            long[] oldFingerprints = fingerprints;
+            byte[] oldDepths = depths;
+            fingerprints = new long[2 * oldFingerprints.length];
+            depths = new byte[2 * oldDepths.length];
+            size = 0;
+            for (int slot = 0; slot < oldFingerprints.length; slot++)
+                if (oldDepths[slot] != 0 && !insert(oldFingerprints[slot], oldDepths[slot] - 1))
+                    replace(oldFingerprints[slot], oldDepths[slot] - 1);
+        }
     }
 }
@@ -0,0 +1,245 @@
+package util.decision;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles decision trees into classes whose classify method consists of nothing but the nested comparisons of the
+ * tree, so that the JIT can treat each tree like hand-written code instead of interpreting the node array.<br>
+ * The class files are generated directly and defined as hidden classes in this package. They use class file
+ * version 49, which needs no stack map frames. Hidden classes only exist since Java 15, so
+ * {@link java.lang.invoke.MethodHandles.Lookup#defineHiddenClass} is looked up reflectively. On older runtimes
+ * {@link #compile} returns null and the trees are interpreted as before.
+ */
+final class DecisionTreeCompiler {
+
+    /**
+     * A compiled decision tree, see {@link DecisionTree#classify(List, double[])}.
+     */
+    interface Classifier {
+        <E extends Comparable<? super E>> int classify(List<E> elements, double[] keys);
+    }
+
+    // HotSpot doesn't JIT-compile methods with more bytecode than this (-XX:HugeMethodLimit),
+    // a larger tree would be slower compiled than interpreted
+    private static final int MAX_CODE_SIZE = 8000;
+
+    private static final String CLASS_NAME = DecisionTreeCompiler.class.getName().replace('.', '/') + "$Compiled";
+
+    // the constant pool is the same for all trees
+    private static final int THIS_CLASS = 2;
+    private static final int SUPER_CLASS = 4;
+    private static final int INTERFACE = 6;
+    private static final int OBJECT_INIT = 10;
+    private static final int CODE = 11;
+    private static final int INIT_NAME = 7;
+    private static final int INIT_DESCRIPTOR = 8;
+    private static final int CLASSIFY_NAME = 12;
+    private static final int CLASSIFY_DESCRIPTOR = 13;
+    private static final int LESS = 19;
+
+    private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c, BIPUSH = 0x10, SIPUSH = 0x11;
+    private static final int DALOAD = 0x31, DCMPL = 0x97, DCMPG = 0x98, IFEQ = 0x99, IFLT = 0x9b, IFGT = 0x9d;
+    private static final int IRETURN = 0xac, RETURN = 0xb1, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8;
+
+    private static final Method DEFINE_HIDDEN_CLASS = findDefineHiddenClass();
+
+    private DecisionTreeCompiler() {}
+
+    private static Method findDefineHiddenClass() {
+        try {
+            Class<?> option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            return MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class,
+                                                         Array.newInstance(option, 0).getClass());
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compares two elements that have equal (or unordered) keys, called by the compiled trees.
+     * @param <E> the type of the elements
+     * @param elements the elements
+     * @param first the index of the first element
+     * @param second the index of the second element
+     * @return true iff the first element is smaller than the second one
+     */
+    static <E extends Comparable<? super E>> boolean less(List<E> elements, int first, int second) {
+        return elements.get(first).compareTo(elements.get(second)) < 0;
+    }
+
+    /**
+     * Returns whether the runtime can define hidden classes, i.e. whether trees that are not too large can be compiled.
+     * @return true iff trees can be compiled
+     */
+    static boolean available() {
+        return DEFINE_HIDDEN_CLASS != null;
+    }
+
+    /**
+     * Compiles a decision tree.
+     * @param tree the tree to be compiled
+     * @return a classifier that behaves exactly like the tree or null if the tree is too large or the runtime cannot
+     * define hidden classes
+     */
+    static Classifier compile(DecisionTree tree) {
+        if (DEFINE_HIDDEN_CLASS == null)
+            return null;
+        Bytecode code = new Bytecode();
+        emit(tree, 0, code);
+        if (code.length > MAX_CODE_SIZE)
+            return null;
+        try {
+            byte[] bytes = classFile(code);
+            Object options = Array.newInstance(DEFINE_HIDDEN_CLASS.getParameterTypes()[2].getComponentType(), 0);
+            MethodHandles.Lookup lookup = (MethodHandles.Lookup) DEFINE_HIDDEN_CLASS.invoke(MethodHandles.lookup(),
+                                                                                             bytes, true, options);
+            return (Classifier) lookup.lookupClass().getDeclaredConstructor().newInstance();
+        } catch (IOException | ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    // emits the subtree rooted at the given node. The left subtree directly follows the comparison,
+    // every path ends with the return of its bucket, so no subtree ever falls through into the next one
+    private static void emit(DecisionTree tree, int node, Bytecode code) {
+        if (node >= tree.nodes()) {
+            code.u1(SIPUSH).u2(node - tree.nodes()).u1(IRETURN);
+            return;
+        }
+        int first = tree.first(node);
+        int second = tree.second(node);
+
+        // keys[first] < keys[second]: dcmpg yields 1 for NaN, so only a real "less" jumps
+        loadKeys(code, first, second);
+        int toLeft = code.branch(DCMPG, IFLT);
+        // keys[first] > keys[second]: dcmpl yields -1 for NaN, so only a real "greater" jumps
+        loadKeys(code, first, second);
+        int toRightByKey = code.branch(DCMPL, IFGT);
+        // the keys are equal or unordered, so the elements decide
+        code.u1(ALOAD_1).u1(BIPUSH).u1(first).u1(BIPUSH).u1(second).u1(INVOKESTATIC).u2(LESS);
+        int toRightByElement = code.branch(-1, IFEQ);
+
+        code.target(toLeft);
+        emit(tree, 2 * node + 1, code);
+        code.target(toRightByKey);
+        code.target(toRightByElement);
+        emit(tree, 2 * node + 2, code);
+    }
+
+    private static void loadKeys(Bytecode code, int first, int second) {
+        code.u1(ALOAD_2).u1(BIPUSH).u1(first).u1(DALOAD);
+        code.u1(ALOAD_2).u1(BIPUSH).u1(second).u1(DALOAD);
+    }
+
+    private static byte[] classFile(Bytecode classify) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);
+
+        String[] utf8 = {
+                CLASS_NAME, "java/lang/Object", Classifier.class.getName().replace('.', '/'), "<init>", "()V",
+                "Code", "classify", "(Ljava/util/List;[D)I", DecisionTreeCompiler.class.getName().replace('.', '/'),
+                "less", "(Ljava/util/List;II)Z"
+        };
+        out.writeShort(20);
+        utf8(out, utf8[0]);                       // 1
+        out.writeByte(7); out.writeShort(1);      // 2: this class
+        utf8(out, utf8[1]);                       // 3
+        out.writeByte(7); out.writeShort(3);      // 4: super class
+        utf8(out, utf8[2]);                       // 5
+        out.writeByte(7); out.writeShort(5);      // 6: the classifier interface
+        utf8(out, utf8[3]);                       // 7
+        utf8(out, utf8[4]);                       // 8
+        out.writeByte(12); out.writeShort(7); out.writeShort(8);              // 9: <init>()V
+        out.writeByte(10); out.writeShort(SUPER_CLASS); out.writeShort(9);    // 10: Object.<init>
+        utf8(out, utf8[5]);                       // 11
+        utf8(out, utf8[6]);                       // 12
+        utf8(out, utf8[7]);                       // 13
+        utf8(out, utf8[8]);                       // 14
+        out.writeByte(7); out.writeShort(14);     // 15: this compiler
+        utf8(out, utf8[9]);                       // 16
+        utf8(out, utf8[10]);                      // 17
+        out.writeByte(12); out.writeShort(16); out.writeShort(17);            // 18: less(List, int, int)
+        out.writeByte(10); out.writeShort(15); out.writeShort(18);            // 19: DecisionTreeCompiler.less
+
+        // public final super
+        out.writeShort(0x0031);
+        out.writeShort(THIS_CLASS);
+        out.writeShort(SUPER_CLASS);
+        out.writeShort(1);
+        out.writeShort(INTERFACE);
+        out.writeShort(0);
+
+        out.writeShort(2);
+        Bytecode init = new Bytecode().u1(ALOAD_0).u1(INVOKESPECIAL).u2(OBJECT_INIT).u1(RETURN);
+        method(out, INIT_NAME, INIT_DESCRIPTOR, 1, 1, init);
+        // two doubles on the stack, locals: this, elements (1), keys (2)
+        method(out, CLASSIFY_NAME, CLASSIFY_DESCRIPTOR, 4, 3, classify);
+
+        out.writeShort(0);
+        return bytes.toByteArray();
+    }
+
+    private static void utf8(DataOutputStream out, String value) throws IOException {
+        out.writeByte(1);
+        out.writeUTF(value);
+    }
+
+    private static void method(DataOutputStream out, int name, int descriptor, int maxStack, int maxLocals,
+                               Bytecode code) throws IOException {
+        out.writeShort(0x0001);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(CODE);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code.bytes, 0, code.length);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    // a growing code array with forward branches that are patched once their target is known
+    private static final class Bytecode {
+        private byte[] bytes = new byte[256];
+        private int length = 0;
+
+        Bytecode u1(int value) {
+            if (length == bytes.length)
+                bytes = Arrays.copyOf(bytes, 2 * length);
+            bytes[length++] = (byte) value;
+            return this;
+        }
+
+        Bytecode u2(int value) {
+            return u1(value >> 8).u1(value);
+        }
+
+        // emits an optional comparison followed by a conditional branch, returns the position of the branch
+        int branch(int comparison, int jump) {
+            if (comparison >= 0)
+                u1(comparison);
+            int position = length;
+            u1(jump).u2(0);
+            return position;
+        }
+
+        // lets the branch at the given position jump to the current position
+        void target(int branch) {
+            int offset = length - branch;
+            bytes[branch + 1] = (byte) (offset >> 8);
+            bytes[branch + 2] = (byte) offset;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package util.decision;
+
+import util.log.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A process-wide repository of {@link PrecomputedMSTCollection}s.<br>
+ * Collections are mapped from the file written by {@link main.PrecomputeLauncher} if it covers the requested
+ * number of vertices. Otherwise, a collection that searches each decision tree the first time it is needed is used
+ * (see {@link PrecomputedMSTCollection#onDemand}), unless {@link #LAZY_PROPERTY} is set to false, in which case all
+ * trees are computed right away, as far as that is possible (see
+ * {@link PrecomputedMSTCollection#MAX_COMPUTED_VERTICES}). Either way, the result is cached in memory, so that every further
+ * request for the same (or a smaller) number of vertices is answered without any precomputation.
+ * All methods of this class may be called from multiple threads.
+ */
+public final class DecisionTreeRepository {
+
+    /**
+     * The file the repository reads from if {@link #FILE_PROPERTY} is not set.
+     */
+    public static final String DEFAULT_FILE = "precomputed-msts";
+    /**
+     * The name of the system property that may be used to point the repository to a different file.
+     */
+    public static final String FILE_PROPERTY = "optimalmst.trees";
+    /**
+     * The name of the system property that decides whether missing decision trees are searched on demand (the default)
+     * or all at once.
+     */
+    public static final String LAZY_PROPERTY = "optimalmst.lazy";
+    /**
+     * The name of the system property that decides whether decision trees searched on demand are appended to the
+     * checkpoint of the file (off by default). The checkpoint is locked while it is used, a process that finds it
+     * locked by another one doesn't persist its trees.
+     */
+    public static final String PERSIST_PROPERTY = "optimalmst.persist";
+    /**
+     * The suffix of the checkpoint that belongs to a decision tree file, see
+     * {@link PrecomputedMSTCollection#computeUpTo(int, int, Path)}.
+     */
+    public static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+    // collections by the number of vertices they have been requested for
+    private static final ConcurrentMap<Integer, PrecomputedMSTCollection> collections = new ConcurrentHashMap<>();
+    // the collections that are being obtained, by the number of vertices they have been requested for
+    private static final ConcurrentMap<Integer, CompletableFuture<PrecomputedMSTCollection>> loads =
+            new ConcurrentHashMap<>();
+
+    private DecisionTreeRepository() {}
+
+    /**
+     * Returns a collection of decision trees for graphs with up to maxVertices vertices. The collection is taken from
+     * the in-memory cache if possible, mapped from disk if the stored file is large enough and created otherwise.
+     * @param maxVertices the number of vertices up to which decision trees are needed
+     * @return a collection containing decision trees for all graphs with up to maxVertices vertices
+     */
+    public static PrecomputedMSTCollection get(int maxVertices) {
+        PrecomputedMSTCollection collection = cached(maxVertices);
+        if (collection != null)
+            return collection;
+
+        // other threads that need the same number of vertices wait for the future instead of obtaining the collection
+        // again. Mapping the file or computing all trees happens outside of the maps, so that it doesn't block
+        // requests for other numbers of vertices
+        CompletableFuture<PrecomputedMSTCollection> load = new CompletableFuture<>();
+        CompletableFuture<PrecomputedMSTCollection> running = loads.putIfAbsent(maxVertices, load);
+        if (running != null)
+            return running.join();
+        try {
+            // another load may have finished between the lookup and claiming the number of vertices
+            collection = cached(maxVertices);
+            if (collection == null) {
+                collection = obtain(maxVertices);
+                collections.put(maxVertices, collection);
+            }
+            load.complete(collection);
+            return collection;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(maxVertices, load);
+        }
+    }
+
+    // returns a cached collection for at least the given number of vertices or null if there is none. A collection
+    // for more vertices also contains all trees for fewer vertices
+    private static PrecomputedMSTCollection cached(int maxVertices) {
+        PrecomputedMSTCollection collection = collections.get(maxVertices);
+        if (collection != null)
+            return collection;
+        for (PrecomputedMSTCollection cached : collections.values())
+            if (cached.getMaxVertices() >= maxVertices)
+                return cached;
+        return null;
+    }
+
+    /**
+     * Removes all collections from the cache and closes them, which releases the checkpoint of a collection that
+     * persists its trees. Collections that are still in use keep working, but no longer persist anything.
+     */
+    public static void clear() {
+        for (Integer maxVertices : collections.keySet()) {
+            PrecomputedMSTCollection collection = collections.remove(maxVertices);
+            if (collection == null)
+                continue;
+            try {
+                collection.close();
+            } catch (IOException e) {
+                Logger.logf("Cannot close the collection for %s vertices: %s", maxVertices, e);
+            }
+        }
+    }
+
+    // maps the file or creates a new collection, the cache has been searched already
+    private static PrecomputedMSTCollection obtain(int maxVertices) {
+        Path file = Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+        PrecomputedMSTCollection stored = load(file);
+        if (stored != null && stored.getMaxVertices() >= maxVertices) {
+            Logger.logf("Mapped decision trees for graphs with up to %s vertices from %s.", stored.getMaxVertices(), file);
+            return stored;
+        }
+        if (!Boolean.parseBoolean(System.getProperty(LAZY_PROPERTY, "true"))
+                && maxVertices <= PrecomputedMSTCollection.MAX_COMPUTED_VERTICES)
+            return PrecomputedMSTCollection.computeUpTo(maxVertices);
+
+        if (Boolean.getBoolean(PERSIST_PROPERTY)) {
+            Path journal = Paths.get(file + CHECKPOINT_SUFFIX);
+            try {
+                return PrecomputedMSTCollection.onDemand(maxVertices, journal);
+            } catch (IOException e) {
+                Logger.logf("Cannot use %s to persist decision trees: %s", journal, e);
+            }
+        }
+        try {
+            return PrecomputedMSTCollection.onDemand(maxVertices, null);
+        } catch (IOException e) {
+            // without a journal, no file is ever touched
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Maps a collection of decision trees from the given file, see {@link PrecomputedMSTCollection#map}.
+     * @param file the file to read from
+     * @return the collection stored in the file or null if the file doesn't exist or cannot be read
+     */
+    public static PrecomputedMSTCollection load(Path file) {
+        if (!Files.isReadable(file))
+            return null;
+        try {
+            return PrecomputedMSTCollection.map(file);
+        } catch (IOException e) {
+            Logger.logf("Cannot read decision trees from %s: %s", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a collection of decision trees to the given file, so that it can be picked up by {@link #load}.
+     * @param collection the collection to be written
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(PrecomputedMSTCollection collection, Path file) throws IOException {
+        collection.write(file);
+    }
+}
@@ -1,31 +1,152 @@
 package util.decision;
 
-import mst.KruskalMST;
 import util.graph.EdgeList;
-import util.graph.Graphs;
 import util.graph.edge.DirectedEdge;
-import util.graph.edge.IndexedEdge;
 import util.graph.edge.WeightedEdge;
 import util.log.Logger;
 
-import java.io.Serializable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
 import java.util.stream.Collectors;
 
 /**
  * Represents a decision tree that can compute the MST of graphs up to a given size using an optimal number of comparisons.
+ * <br>
+ * Collections are stored with {@link #write} in a flat binary file that {@link #map} maps into memory again. All numbers
+ * are big endian, all offsets are absolute. The file consists of
+ * <ul>
+ * <li>a header: the magic number "OMST", the format version, the max number of vertices and the number of sections,</li>
+ * <li>an index with one entry per vertex count: the vertex count, its number of structures and the offset of its
+ * section,</li>
+ * <li>one section per vertex count: the canonical mask (see {@link CanonicalLabeling}) and the offset of the record of
+ * each structure, ordered by mask,</li>
+ * <li>the records: a byte for the kind of the record followed by the decision tree of the structure (see
+ * {@link DecisionTree#encode}), its distinct MSTs as lists of edge indices and the MST of each bucket.</li>
+ * </ul>
+ * A mapped collection decodes the record of a structure the first time the structure is needed, so that loading is
+ * almost free and processes that map the same file share its pages.
  */
-public final class PrecomputedMSTCollection implements Serializable {
+public final class PrecomputedMSTCollection implements Closeable {
 
-    private static final long serialVersionUID = 1L;
+    private static final int MAGIC = 0x4F4D5354;
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 16;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final int SECTION_ENTRY_SIZE = 12;
 
-    // graphs[vertex count][edge structure id]
+    /**
+     * The largest number of vertices for which {@link #computeUpTo} can compute all decision trees. A tree is searched
+     * by enumerating all orders of the edges of a structure, which is feasible for the ten edges of the complete graph
+     * on five vertices, but not for the 15 of the complete graph on six.
+     */
+    public static final int MAX_COMPUTED_VERTICES = 5;
+    // the largest number of edges of a structure whose tree is searched on demand. With 11 edges, the table of all
+    // permutations alone would take half a gigabyte
+    private static final int MAX_SEARCHED_EDGES = MAX_COMPUTED_VERTICES * (MAX_COMPUTED_VERTICES - 1) / 2;
+
+    // up to this number of vertices, structures are found by indexing a table with the mask of the graph,
+    // which has 2^15 entries for 6 vertices but would already have 2^21 for 7
+    private static final int DIRECT_VERTICES = 6;
+
+    // graphs[vertex count][edge structure id], a mapped collection fills these maps on demand
     private final Map<Integer, Map<GraphStructure, GraphStructureMSTLookup>> graphs;
     private final int maxVertices;
+    // the file the structures are decoded from or null if the collection has been computed
+    private final MappedFile file;
+    // whether missing structures are searched when they are needed for the first time
+    private final boolean synthesize;
+    // the checkpoint that structures searched on demand are appended to or null if they aren't persisted
+    private final Checkpoint journal;
+    // set once appending to the journal has failed, the journal is only a cache, so the collection goes on without it
+    private volatile boolean journalFailed = false;
+    // the searches that are running on demand, so that other threads that need the same structure wait for them
+    private final Map<GraphStructure, CompletableFuture<GraphStructureMSTLookup>> searches = new ConcurrentHashMap<>();
+    // canonical labelings by mask and vertex count, built on demand
+    private volatile Map<Long, CanonicalLabeling> labelings;
+    // direct[vertex count] is the mask-indexed table for that number of vertices, built on demand
+    private volatile DirectTable[] direct;
 
     private PrecomputedMSTCollection(int maxVertices, Map<Integer, Map<GraphStructure, GraphStructureMSTLookup>> graphs) {
         this.graphs = graphs;
         this.maxVertices = maxVertices;
+        this.file = null;
+        this.synthesize = false;
+        this.journal = null;
+    }
+
+    private PrecomputedMSTCollection(MappedFile file) {
+        this.graphs = new HashMap<>();
+        for (int vertices = 2; vertices <= file.maxVertices; vertices++)
+            graphs.put(vertices, new ConcurrentHashMap<>());
+        this.maxVertices = file.maxVertices;
+        this.file = file;
+        this.synthesize = false;
+        this.journal = null;
+    }
+
+    private PrecomputedMSTCollection(int maxVertices, Checkpoint journal) {
+        this.graphs = new HashMap<>();
+        for (int vertices = 2; vertices <= maxVertices; vertices++) {
+            graphs.put(vertices, new ConcurrentHashMap<>());
+            if (journal != null)
+                graphs.get(vertices).putAll(journal.completed(vertices));
+        }
+        this.maxVertices = maxVertices;
+        this.file = null;
+        this.synthesize = true;
+        this.journal = journal;
+    }
+
+    /**
+     * Creates a collection that doesn't contain any decision trees at first. The tree of a structure is searched
+     * the first time a graph of that structure is looked up and kept from then on. Since the partitions of real
+     * graphs only show a small fraction of all structures, this saves most of the precomputation for up to
+     * {@link #MAX_COMPUTED_VERTICES} vertices. Note that the first lookup of a dense structure may take as long as its
+     * search, almost 20 minutes for the complete graph on five vertices.<br>
+     * Trees are only searched for structures with at most ten edges. The MST of a larger structure, which has at least
+     * six vertices, is computed by sorting its edges and running Kruskal's algorithm instead, which doesn't use an
+     * optimal number of comparisons. Such structures are never persisted.<br>
+     * The journal is locked while the collection is open. If another process (or collection) holds its lock, the
+     * collection does without a journal. Errors while appending to the journal are logged, after which the collection
+     * stops appending to it.
+     * @param maxVertices the number of vertices up to which graphs may be looked up
+     * @param journal a checkpoint file (see {@link #computeUpTo(int, int, Path)}) that provides the structures found
+     * so far and receives every structure found from now on, or null if the structures shouldn't be persisted
+     * @return an empty collection that searches its decision trees on demand, which has to be closed to release the
+     * journal
+     * @throws IOException if the journal cannot be read or opened for writing
+     */
+    public static PrecomputedMSTCollection onDemand(int maxVertices, Path journal) throws IOException {
+        Checkpoint checkpoint = journal == null ? null : Checkpoint.tryOpen(journal);
+        if (journal != null && checkpoint == null)
+            Logger.logf("%s is locked by another process, decision trees searched on demand aren't persisted.", journal);
+        return new PrecomputedMSTCollection(maxVertices, checkpoint);
+    }
+
+    /**
+     * Closes the journal of a collection that searches its trees on demand. The collection may still be used
+     * afterwards, but no longer persists the structures it finds.
+     * @throws IOException if the journal cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journalFailed = true;
+            journal.close();
+        }
     }
 
     /**
@@ -37,101 +158,439 @@ public final class PrecomputedMSTCollection implements Serializable {
     }
 
     /**
-     * Computes all optimal mst decision trees for graphs with up to maxVertices vertices
+     * Computes all optimal mst decision trees for graphs with up to maxVertices vertices, using all available processors.
      * @param maxVertices the number of vertices that a graph of which we want to compute the mst in the optimal number of
      * comparisons may have
      * @return an object of this class that contains all the decision trees
+     * @throws IllegalArgumentException if maxVertices exceeds {@link #MAX_COMPUTED_VERTICES}
      */
     public static PrecomputedMSTCollection computeUpTo(int maxVertices) {
+        return computeUpTo(maxVertices, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Computes all optimal mst decision trees for graphs with up to maxVertices vertices. The edge structures are
+     * searched independently of each other by a {@link ForkJoinPool} with the given parallelism.
+     * @param maxVertices the number of vertices that a graph of which we want to compute the mst in the optimal number of
+     * comparisons may have
+     * @param parallelism the number of threads used for the search
+     * @return an object of this class that contains all the decision trees
+     * @throws IllegalArgumentException if maxVertices exceeds {@link #MAX_COMPUTED_VERTICES}
+     */
+    public static PrecomputedMSTCollection computeUpTo(int maxVertices, int parallelism) {
+        try {
+            return computeUpTo(maxVertices, parallelism, null);
+        } catch (IOException e) {
+            // without a checkpoint, no file is ever touched
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Computes all optimal mst decision trees for graphs with up to maxVertices vertices like
+     * {@link #computeUpTo(int, int)}, but appends every structure to a checkpoint file as soon as its tree has been
+     * found. Structures that the checkpoint already contains are not searched again, so a computation that has been
+     * interrupted can be resumed by calling this method with the same checkpoint.
+     * @param maxVertices the number of vertices that a graph of which we want to compute the mst in the optimal number of
+     * comparisons may have
+     * @param parallelism the number of threads used for the search
+     * @param checkpoint the checkpoint file, which is created if it doesn't exist, or null for no checkpoint
+     * @return an object of this class that contains all the decision trees
+     * @throws IOException if the checkpoint cannot be read or written or is locked by another process
+     * @throws IllegalArgumentException if maxVertices exceeds {@link #MAX_COMPUTED_VERTICES}
+     */
+    public static PrecomputedMSTCollection computeUpTo(int maxVertices, int parallelism, Path checkpoint)
+            throws IOException {
+        if (maxVertices > MAX_COMPUTED_VERTICES)
+            throw new IllegalArgumentException("Decision trees can only be computed for up to "
+                                               + MAX_COMPUTED_VERTICES + " vertices.");
 
         Logger.logf("Computing decision trees for graphs with up to %s vertices.", maxVertices);
 
-        Map<Integer, Map<GraphStructure, GraphStructureMSTLookup>> lookups = new HashMap<>();
+        Map<Integer, Map<GraphStructure, GraphStructureMSTLookup>> lookups = new ConcurrentHashMap<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
 
-        // iterate over all vertex counts
-        for (int vertices = 2; vertices < maxVertices + 1; vertices++) {
-            lookups.put(vertices, new HashMap<>());
+        try (Checkpoint progress = checkpoint == null ? null : Checkpoint.open(checkpoint)) {
+            // iterate over all vertex counts
+            for (int vertices = 2; vertices < maxVertices + 1; vertices++) {
+                Map<GraphStructure, GraphStructureMSTLookup> structures = new ConcurrentHashMap<>();
+                if (progress != null)
+                    structures.putAll(progress.completed(vertices));
+                lookups.put(vertices, structures);
 
-            List<WeightedEdge<Integer>> possibleEdges = new ArrayList<>();
-            Iterators.ascendingIntPairs(vertices, (i, j) -> new WeightedEdge<>(i, j, 0)).forEach(possibleEdges::add);
+                // generate one combination of edges per isomorphism class
+                List<List<WeightedEdge<Integer>>> combinations = new ArrayList<>();
+                long max = 1L << (vertices * (vertices - 1) / 2);
+                for (long mask = 0; mask < max; mask++)
+                    if (CanonicalLabeling.isCanonical(vertices, mask))
+                        combinations.add(CanonicalLabeling.edgesOf(mask));
+                Logger.logf("%s vertices: %s of %s edge structures are pairwise non-isomorphic, %s taken from the checkpoint.",
+                        vertices, combinations.size(), max, structures.size());
 
-            int counter = 0;
-            long max = 1L << possibleEdges.size();
+                try {
+                    pool.invoke(new StructureSearch(vertices, combinations, 0, combinations.size(), structures, progress,
+                                                    new AtomicInteger()));
+                } catch (UncheckedIOException e) {
+                    // thrown by the checkpoint from within a worker
+                    throw e.getCause();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return new PrecomputedMSTCollection(maxVertices, lookups);
+    }
 
-            // generate every combination of edges
-            edgecombinations:
-            for (List<WeightedEdge<Integer>> edges : Iterators.powerSet(possibleEdges)) {
-                counter++;
+    // searches the decision trees for a range of edge structures, splitting the range until single structures remain,
+    // so that idle workers can steal the remaining halves
+    private static final class StructureSearch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
 
-                if (edges.size() <= 1)
-            		continue;
+        private final int vertices;
+        private final List<List<WeightedEdge<Integer>>> combinations;
+        private final int from;
+        private final int to;
+        private final Map<GraphStructure, GraphStructureMSTLookup> structures;
+        private final Checkpoint checkpoint;
+        private final AtomicInteger finished;
 
-                Logger.logf("Generating decision tree for edge structure %s/%s (%s vertices, %s edges total).",
-                        counter, max, vertices, edges.size());
+        StructureSearch(int vertices, List<List<WeightedEdge<Integer>>> combinations, int from, int to,
+                        Map<GraphStructure, GraphStructureMSTLookup> structures, Checkpoint checkpoint,
+                        AtomicInteger finished) {
+            this.vertices = vertices;
+            this.combinations = combinations;
+            this.from = from;
+            this.to = to;
+            this.structures = structures;
+            this.checkpoint = checkpoint;
+            this.finished = finished;
+        }
 
-                // iterate over all decision tree depths
-                for (int depth = 0; depth < vertices * vertices; depth++) {
-                    Logger.logf("  Currently exploring depth: %s", depth);
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new StructureSearch(vertices, combinations, from, middle, structures, checkpoint, finished),
+                          new StructureSearch(vertices, combinations, middle, to, structures, checkpoint, finished));
+                return;
+            }
+            List<WeightedEdge<Integer>> edges = combinations.get(from);
+            GraphStructure structure = new GraphStructure(CanonicalLabeling.maskOf(edges));
+            if (edges.size() > 1 && !structures.containsKey(structure)) {
+                GraphStructureMSTLookup lookup = searchTree(vertices, edges);
+                structures.put(structure, lookup);
+                if (checkpoint != null)
+                    checkpoint.append(vertices, structure.mask, lookup);
+            }
+            Logger.logf("Finished edge structure %s/%s (%s vertices, %s edges total).",
+                    finished.incrementAndGet(), combinations.size(), vertices, edges.size());
+        }
+    }
 
-                    decisiontrees:
-                    // iterate over all decision trees
-                    for (DecisionTree tree : DecisionTree.enumerateTrees(depth, edges.size())) {
+    // an append-only file of completed structures. Each entry consists of the vertex count, the canonical mask,
+    // the length of the record and the record itself in the same encoding as in the final file
+    private static final class Checkpoint implements Closeable {
+        private static final int ENTRY_HEADER_SIZE = 16;
 
-                        Map<Integer, List<Integer>> mstIndices = new HashMap<>();
+        private final FileChannel channel;
+        private final Map<Integer, Map<GraphStructure, GraphStructureMSTLookup>> completed = new HashMap<>();
 
-                        for (List<Integer> permutation : Iterators.indexPermutations(edges.size())) {
-                            int bucket = tree.classify(permutation);
-                            // calculate mst indices here
+        private Checkpoint(FileChannel channel) {
+            this.channel = channel;
+        }
 
-                            List<IndexedEdge<Integer, WeightedEdge<Integer>>> permutedEdges = new ArrayList<>();
-                            // Create graph with permuted edge weights
-                            for (int index = 0; index < edges.size(); ++index) {
-                            	permutedEdges.add(new IndexedEdge<>(index,
-                                        edges.get(index).reweighted(permutation.get(index))));
-                            }
+        // opens the checkpoint, which must not be in use by another process
+        static Checkpoint open(Path path) throws IOException {
+            Checkpoint checkpoint = tryOpen(path);
+            if (checkpoint == null)
+                throw new IOException(path + " is locked by another process.");
+            return checkpoint;
+        }
 
-                            EdgeList<IndexedEdge<Integer, WeightedEdge<Integer>>> mst = KruskalMST.compute(vertices, permutedEdges);
+        // opens the checkpoint or returns null if another process (or another checkpoint of this process) holds its
+        // lock. Nothing is read or truncated before the lock has been taken, so that no entries of the other process
+        // are cut off. The lock is released when the channel is closed
+        static Checkpoint tryOpen(Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                   StandardOpenOption.WRITE);
+            Checkpoint checkpoint = new Checkpoint(channel);
+            try {
+                FileLock lock;
+                try {
+                    lock = channel.tryLock();
+                } catch (OverlappingFileLockException e) {
+                    lock = null;
+                }
+                if (lock == null) {
+                    channel.close();
+                    return null;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining())
+                    if (channel.read(buffer) < 0)
+                        break;
+                buffer.flip();
 
-                            List<Integer> edgeIndices = new ArrayList<>();
-                            for (IndexedEdge<Integer, WeightedEdge<Integer>> edge : mst) {
-                            	edgeIndices.add(edge.index);
-                            }
-                            Collections.sort(edgeIndices);
+                int position = 0;
+                while (position + ENTRY_HEADER_SIZE <= buffer.limit()) {
+                    int vertices = buffer.getInt(position);
+                    long mask = buffer.getLong(position + 4);
+                    int length = buffer.getInt(position + 12);
+                    if (vertices < 2 || vertices > CanonicalLabeling.MAX_VERTICES || length < 0
+                            || position + ENTRY_HEADER_SIZE + length > buffer.limit())
+                        break;
+                    checkpoint.completed.computeIfAbsent(vertices, v -> new HashMap<>())
+                            .put(new GraphStructure(mask),
+                                 GraphStructureMSTLookup.decode(buffer, position + ENTRY_HEADER_SIZE, vertices, mask));
+                    position += ENTRY_HEADER_SIZE + length;
+                }
+                // an entry that was cut off by a crash is dropped, it will be computed again
+                channel.truncate(position);
+                channel.position(position);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            return checkpoint;
+        }
 
-                            if (mstIndices.containsKey(bucket)) {
-                                // compare calculated indices with stored ones
-                                List<Integer> otherIndices = mstIndices.get(bucket);
+        Map<GraphStructure, GraphStructureMSTLookup> completed(int vertices) {
+            return completed.getOrDefault(vertices, Collections.emptyMap());
+        }
 
-                                if (otherIndices.size() == edgeIndices.size())
-                                    continue decisiontrees;
+        // every entry is forced to the disk right away, the trees are expensive enough to make this negligible
+        synchronized void append(int vertices, long mask, GraphStructureMSTLookup lookup) {
+            try {
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                lookup.encode(new DataOutputStream(record));
+                ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_SIZE + record.size());
+                entry.putInt(vertices).putLong(mask).putInt(record.size()).put(record.toByteArray()).flip();
+                while (entry.hasRemaining())
+                    channel.write(entry);
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
 
-                                for (int i = 0; i < edgeIndices.size(); ++i)
-                                    if (!otherIndices.get(i).equals(edgeIndices.get(i)))
-                                        continue decisiontrees;
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
 
-                            } else {
-                                // store indices
-                                mstIndices.put(bucket, edgeIndices);
-                            }
-                        }
+    // finds a decision tree of minimal depth for the given edge structure
+    private static GraphStructureMSTLookup searchTree(int vertices, List<WeightedEdge<Integer>> edges) {
 
-                        // a perfect decision tree has been found
-                        Logger.logf("Edges: %s", edges.stream().map(e -> String.format("(%s, %s)", e.from(), e.to())).collect(Collectors.joining(" ")));
-                        Logger.logf("MST: %s", mstIndices);
-                        Logger.log(tree.toString());
-                        GraphStructure structureId = GraphStructure.of(vertices, edges);
-                        lookups.get(vertices).put(structureId, new DecisionTreeMSTLookup(tree, mstIndices));
-                        continue edgecombinations;
-                    }
-                }
-                // this should never happen
-                throw new RuntimeException("No MST found!");
+        // calculate the mst of every permutation of edge weights once, all trees that are tried share the table
+        OutcomeTable table = new OutcomeTable(vertices, edges);
+        OutcomeIds outcomes = table.ids;
+
+        // a tree needs at least log2(#outcomes) levels to tell all outcomes apart. The sets of permutations that
+        // cannot be told apart at some depth stay unsolvable at that depth when the tree gets deeper. The
+        // automorphisms of the structure map the permutations with the same mst to permutations with the same mst
+        long mask = CanonicalLabeling.maskOf(edges);
+        DecisionTree.Searcher searcher = new DecisionTree.Searcher(edges.size(), table.signatures, table.outcomes,
+                CanonicalLabeling.edgeAutomorphisms(vertices, mask));
+        for (int depth = DecisionTree.lowerBound(outcomes.size); ; depth++) {
+            Logger.logf("  Currently exploring depth: %s", depth);
+
+            int[] bucketOutcomes = new int[1 << depth];
+            DecisionTree tree = searcher.construct(depth, bucketOutcomes);
+            if (tree == null)
+                continue;
+
+            // buckets with the same outcome share their row of the table
+            int[][] msts = new int[outcomes.size][];
+            for (int id = 0; id < outcomes.size; id++)
+                msts[id] = indices(outcomes.msts[id]);
+            int[][] mstIndices = new int[bucketOutcomes.length][];
+            for (int bucket = 0; bucket < bucketOutcomes.length; bucket++)
+                mstIndices[bucket] = msts[bucketOutcomes[bucket]];
+
+            // a perfect decision tree has been found
+            Logger.logf("Edges: %s", edges.stream().map(e -> String.format("(%s, %s)", e.from(), e.to())).collect(Collectors.joining(" ")));
+            Logger.logf("MST: %s", Arrays.deepToString(mstIndices));
+            Logger.log(tree.toString());
+
+            return fastest(vertices, mask, new DecisionTreeMSTLookup(tree, mstIndices));
+        }
+    }
+
+    // for few edges, looking up the rank of the permutation is cheaper than walking the tree in the interpreter, but
+    // not cheaper than the compiled tree. Files only store the tree, so that the runtime that uses a structure
+    // decides whether trees can be compiled, and the table of so few edges is cheap to rebuild
+    private static GraphStructureMSTLookup fastest(int vertices, long mask, DecisionTreeMSTLookup tree) {
+        if (Long.bitCount(mask) > RankTableMSTLookup.MAX_EDGES || DecisionTreeCompiler.available())
+            return tree;
+        List<WeightedEdge<Integer>> edges = CanonicalLabeling.edgesOf(mask);
+        return new RankTableMSTLookup(edges.size(), tree, new OutcomeTable(vertices, edges));
+    }
+
+    // the outcome of every permutation of the edge ranks of a structure, indexed by the Lehmer code of the permutation,
+    // i.e. its position in lexicographic order. signatures[rank] holds the result of every comparison between two
+    // edges (see DecisionTree#construct) and outcomes[rank] the id of the mst, whose mask is ids.msts[id]
+    private static final class OutcomeTable {
+        final long[] signatures;
+        final int[] outcomes;
+        final OutcomeIds ids = new OutcomeIds();
+
+        OutcomeTable(int vertices, List<WeightedEdge<Integer>> edges) {
+            int m = edges.size();
+            int[] from = new int[m];
+            int[] to = new int[m];
+            for (int index = 0; index < m; index++) {
+                from[index] = edges.get(index).from();
+                to[index] = edges.get(index).to();
+            }
+            if (m > DecisionTree.MAX_SIGNATURE_ELEMENTS)
+                throw new IllegalArgumentException("Too many edges to enumerate all permutations.");
+            int count = 1;
+            for (int i = 2; i <= m; i++)
+                count *= i;
+            signatures = new long[count];
+            outcomes = new int[count];
+
+            // weight[i] is the rank of edge i, byRank[r] the edge with rank r
+            int[] weight = new int[m];
+            int[] byRank = new int[m];
+            int[] component = new int[vertices];
+            for (int index = 0; index < m; index++)
+                weight[index] = byRank[index] = index;
+
+            for (int rank = 0; ; rank++) {
+                signatures[rank] = signature(weight);
+                outcomes[rank] = ids.idOf(kruskal(from, to, byRank, component));
+
+                // advance to the lexicographically next permutation, which changes a suffix of the ranks only
+                int k = m - 2;
+                while (k >= 0 && weight[k] > weight[k + 1])
+                    k--;
+                if (k < 0)
+                    break;
+                int l = m - 1;
+                while (weight[l] < weight[k])
+                    l--;
+                swap(weight, k, l);
+                for (int i = k + 1, j = m - 1; i < j; i++, j--)
+                    swap(weight, i, j);
+                for (int i = k; i < m; i++)
+                    byRank[weight[i]] = i;
             }
         }
-        return new PrecomputedMSTCollection(maxVertices, lookups);
+
+        private static long signature(int[] weight) {
+            long signature = 0;
+            for (int j = 1; j < weight.length; j++)
+                for (int i = 0; i < j; i++)
+                    if (weight[i] < weight[j])
+                        signature |= 1L << CanonicalLabeling.pair(i, j);
+            return signature;
+        }
+
+        private static void swap(int[] array, int i, int j) {
+            int temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+    }
+
+    // Kruskal's algorithm for graphs with at most 32 vertices. Each vertex knows the bit mask of its component,
+    // so that neither the edges nor the union-find structure have to be allocated. Returns the mst as a bit mask
+    // over the edge indices
+    private static long kruskal(int[] from, int[] to, int[] byRank, int[] component) {
+        for (int v = 0; v < component.length; v++)
+            component[v] = 1 << v;
+        long mst = 0;
+        for (int edge : byRank) {
+            int u = from[edge];
+            int v = to[edge];
+            if ((component[u] & (1 << v)) != 0)
+                continue;
+            mst |= 1L << edge;
+            int merged = component[u] | component[v];
+            for (int rest = merged; rest != 0; rest &= rest - 1)
+                component[Integer.numberOfTrailingZeros(rest)] = merged;
+        }
+        return mst;
+    }
+
+    // the set bits of a mask in ascending order
+    private static int[] indices(long mask) {
+        int[] indices = new int[Long.bitCount(mask)];
+        for (int i = 0; mask != 0; i++, mask &= mask - 1)
+            indices[i] = Long.numberOfTrailingZeros(mask);
+        return indices;
+    }
+
+    // numbers distinct msts in the order they are found, an open addressing hash table over their masks
+    private static final class OutcomeIds {
+        long[] msts = new long[16];
+        int size = 0;
+        private long[] keys = new long[32];
+        private int[] ids = new int[32];
+
+        OutcomeIds() {
+            Arrays.fill(keys, -1);
+        }
+
+        int idOf(long mst) {
+            int slot = slot(mst, keys);
+            if (keys[slot] == mst)
+                return ids[slot];
+            if (size == msts.length)
+                msts = Arrays.copyOf(msts, 2 * size);
+            msts[size] = mst;
+            keys[slot] = mst;
+            ids[slot] = size;
+            // keep the table at most half full
+            if (2 * ++size > keys.length)
+                grow();
+            return size - 1;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new long[2 * oldKeys.length];
+            ids = new int[keys.length];
+            Arrays.fill(keys, -1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == -1)
+                    continue;
+                int slot = slot(oldKeys[i], keys);
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+
+        // masks have at most 63 bits, so -1 never is one and marks free slots
+        private static int slot(long mst, long[] keys) {
+            int slot = (int) (mst * 0x9E3779B97F4A7C15L >>> 40) & (keys.length - 1);
+            while (keys[slot] != -1 && keys[slot] != mst)
+                slot = (slot + 1) & (keys.length - 1);
+            return slot;
+        }
     }
 
     public <T, E extends DirectedEdge<T, E> & Comparable<? super E>> EdgeList<E> findMST(int vertices, List<E> edges) {
+        return findMST(vertices, edges, null);
+    }
+
+    /**
+     * Computes the MST of a small graph with the decision tree of its structure. If a key function is given, the
+     * decision tree compares the primitive keys of the edges and falls back to comparing the edges themselves only
+     * for equal keys.
+     * @param <T> the weight type of the edges
+     * @param <E> the edge type of the graph
+     * @param vertices the number of vertices of the graph
+     * @param edges the edges of the graph
+     * @param key a function that maps each edge to a key consistent with the natural order of the edges,
+     * i.e. key(e) &lt; key(f) implies e &lt; f, or null if the edges have no such key
+     * @return the edges of the MST
+     */
+    public <T, E extends DirectedEdge<T, E> & Comparable<? super E>> EdgeList<E> findMST(int vertices, List<E> edges,
+                                                                                         ToDoubleFunction<? super E> key) {
         if (vertices > maxVertices)
             throw new IllegalArgumentException("No precomputed solutions exist for graph size " + vertices + ".");
 
@@ -142,44 +601,283 @@ public final class PrecomputedMSTCollection implements Serializable {
         if (edges.size() <= 1)
         	return new EdgeList<>(edges);
 
-        GraphStructure structureId = GraphStructure.of(vertices, edges);
-        GraphStructureMSTLookup structure = graphs.get(vertices).get(structureId);
+        // the decision trees are stored for the canonical representative of each isomorphism class only
+        long mask = CanonicalLabeling.maskOf(edges);
+        CanonicalLabeling labeling;
+        GraphStructureMSTLookup structure;
+        if (vertices <= DIRECT_VERTICES) {
+            DirectTable table = directTable(vertices);
+            labeling = table.labelings[(int) mask];
+            // structures that are searched on demand haven't been filled in up front
+            if (labeling == null)
+                table.labelings[(int) mask] = labeling = CanonicalLabeling.of(vertices, mask);
+            structure = table.lookups[(int) mask];
+            if (structure == null)
+                table.lookups[(int) mask] = structure = structure(vertices, labeling.mask);
+        } else {
+            labeling = labeling(vertices, mask);
+            structure = structure(vertices, labeling.mask);
+        }
+        List<E> arranged = labeling.arrange(edges);
+
+        int[] indices;
+        if (key == null) {
+            indices = structure.lookup(arranged);
+        } else {
+            double[] keys = new double[arranged.size()];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = key.applyAsDouble(arranged.get(i));
+            indices = structure.lookup(arranged, keys);
+        }
 
         EdgeList<E> mst = new EdgeList<>();
-        for (int index : structure.lookup(edges))
-            mst.append(edges.get(index));
+        for (int index : indices)
+            mst.append(arranged.get(index));
         return mst;
     }
 
-    // encapsulates which edges a graph contains
-    // hashable in O(1) due to precomputation
-    // comparable in O(m) because edges are sorted
-    // can be used as key in a HashMap for lookup in expected time O(c * m) = O(m)
-    private static final class GraphStructure implements Serializable {
-        private static final long serialVersionUID = 1L;
+    // canonical labelings are memoized, since the same structures show up over and over again
+    private CanonicalLabeling labeling(int vertices, long mask) {
+        Map<Long, CanonicalLabeling> memo = labelings;
+        if (memo == null)
+            labelings = memo = new ConcurrentHashMap<>();
+        return memo.computeIfAbsent(mask * (CanonicalLabeling.MAX_VERTICES + 1) + vertices,
+                key -> CanonicalLabeling.of(vertices, mask));
+    }
+
+    // returns the lookup of a canonical structure, decoding it from the file if necessary
+    private GraphStructureMSTLookup structure(int vertices, long mask) {
+        Map<GraphStructure, GraphStructureMSTLookup> structures = graphs.get(vertices);
+        GraphStructure structure = new GraphStructure(mask);
+        GraphStructureMSTLookup lookup = structures.get(structure);
+        if (lookup != null)
+            return lookup;
+        if (file != null)
+            return structures.computeIfAbsent(structure, s -> file.decode(vertices, s.mask));
+        // the permutations of larger structures cannot be enumerated, but Kruskal's algorithm is cheap to set up
+        if (synthesize && Long.bitCount(mask) > MAX_SEARCHED_EDGES)
+            return structures.computeIfAbsent(structure,
+                    s -> new KruskalMSTLookup(vertices, CanonicalLabeling.edgesOf(s.mask)));
+        if (synthesize)
+            return synthesize(vertices, structure, structures);
+        return null;
+    }
+
+    // Searches the tree of a structure that is missing. Other threads that need the same structure wait for the
+    // future of the search instead of repeating it. The search runs outside of the maps, so that it doesn't block
+    // lookups of other structures, which it would inside of computeIfAbsent
+    private GraphStructureMSTLookup synthesize(int vertices, GraphStructure structure,
+                                               Map<GraphStructure, GraphStructureMSTLookup> structures) {
+        CompletableFuture<GraphStructureMSTLookup> search = new CompletableFuture<>();
+        CompletableFuture<GraphStructureMSTLookup> running = searches.putIfAbsent(structure, search);
+        if (running != null)
+            return running.join();
+        try {
+            // another search may have finished between the lookup and claiming the structure
+            GraphStructureMSTLookup lookup = structures.get(structure);
+            if (lookup == null) {
+                Logger.logf("Searching the decision tree of structure %s (%s vertices) on demand.", structure.mask,
+                            vertices);
+                lookup = searchTree(vertices, CanonicalLabeling.edgesOf(structure.mask));
+                structures.put(structure, lookup);
+                persist(vertices, structure.mask, lookup);
+            }
+            search.complete(lookup);
+            return lookup;
+        } catch (RuntimeException | Error e) {
+            search.completeExceptionally(e);
+            throw e;
+        } finally {
+            searches.remove(structure, search);
+        }
+    }
+
+    // the journal is only a cache, so a failure to write it must not fail the computation that needed the tree
+    private void persist(int vertices, long mask, GraphStructureMSTLookup lookup) {
+        if (journal == null || journalFailed)
+            return;
+        try {
+            journal.append(vertices, mask, lookup);
+        } catch (UncheckedIOException e) {
+            // a partially written entry makes all later ones unreadable, so stop appending
+            journalFailed = true;
+            Logger.logf("Cannot append to the journal, decision trees are no longer persisted: %s", e.getCause());
+        }
+    }
+
+    // returns the canonical masks of all structures with the given number of vertices in ascending order
+    private long[] canonicalMasks(int vertices) {
+        if (file != null)
+            return file.masks(vertices);
+        return graphs.get(vertices).keySet().stream().mapToLong(structure -> structure.mask).sorted().toArray();
+    }
+
+    // building a table twice in a race is harmless, both are equal
+    private DirectTable directTable(int vertices) {
+        DirectTable[] tables = direct;
+        if (tables == null)
+            direct = tables = new DirectTable[DIRECT_VERTICES + 1];
+        DirectTable table = tables[vertices];
+        if (table == null)
+            tables[vertices] = table = new DirectTable(vertices, canonicalMasks(vertices));
+        return table;
+    }
+
+    // the canonical labeling and the lookup of every graph with a given number of vertices, indexed by its mask.
+    // The labelings are filled one isomorphism class at a time by relabeling its canonical representative,
+    // the lookups are filled on first use, so that a mapped collection only decodes the structures it needs
+    private static final class DirectTable {
+        final CanonicalLabeling[] labelings;
+        final GraphStructureMSTLookup[] lookups;
+
+        DirectTable(int vertices, long[] canonicalMasks) {
+            int size = 1 << (vertices * (vertices - 1) / 2);
+            labelings = new CanonicalLabeling[size];
+            lookups = new GraphStructureMSTLookup[size];
+            for (long mask : canonicalMasks)
+                CanonicalLabeling.fillOrbit(vertices, mask, labelings);
+        }
+    }
+
+    /**
+     * Writes this collection to a file in the format described above.
+     * @param path the file to write to
+     * @throws IOException if the file cannot be written
+     * @throws IllegalStateException if the collection searches its trees on demand
+     */
+    public void write(Path path) throws IOException {
+        if (synthesize)
+            throw new IllegalStateException("A collection that searches its trees on demand is incomplete, "
+                                            + "its trees are persisted through its journal.");
+        // the records are encoded first, since their sizes determine all offsets
+        List<Integer> vertexCounts = new ArrayList<>();
+        List<long[]> masks = new ArrayList<>();
+        List<List<byte[]>> records = new ArrayList<>();
+        for (int vertices = 2; vertices <= maxVertices; vertices++) {
+            long[] sectionMasks = canonicalMasks(vertices);
+            List<byte[]> sectionRecords = new ArrayList<>();
+            for (long mask : sectionMasks) {
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                structure(vertices, mask).encode(new DataOutputStream(record));
+                sectionRecords.add(record.toByteArray());
+            }
+            vertexCounts.add(vertices);
+            masks.add(sectionMasks);
+            records.add(sectionRecords);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(maxVertices);
+            out.writeInt(vertexCounts.size());
+
+            int sectionOffset = HEADER_SIZE + vertexCounts.size() * INDEX_ENTRY_SIZE;
+            for (int section = 0; section < vertexCounts.size(); section++) {
+                out.writeInt(vertexCounts.get(section));
+                out.writeInt(masks.get(section).length);
+                out.writeInt(sectionOffset);
+                sectionOffset += masks.get(section).length * SECTION_ENTRY_SIZE;
+            }
+
+            int recordOffset = sectionOffset;
+            for (int section = 0; section < vertexCounts.size(); section++) {
+                for (int structure = 0; structure < masks.get(section).length; structure++) {
+                    out.writeLong(masks.get(section)[structure]);
+                    out.writeInt(recordOffset);
+                    recordOffset += records.get(section).get(structure).length;
+                }
+            }
 
-        private final int[] froms;
-        private final int[] tos;
-        private final int hash;
+            for (List<byte[]> sectionRecords : records)
+                for (byte[] record : sectionRecords)
+                    out.write(record);
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #write} into memory. Only the header and the index are read right away.
+     * @param path the file to map
+     * @return the collection stored in the file
+     * @throws IOException if the file cannot be read or is not a decision tree file of the current version
+     */
+    public static PrecomputedMSTCollection map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Decision tree file is too large.");
+            // the mapping stays valid after the channel has been closed
+            return new PrecomputedMSTCollection(new MappedFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+        }
+    }
 
-        public static <T, E extends DirectedEdge<T, E>> GraphStructure of(int vertices, Iterable<E> edges) {
-            EdgeList<E> sorted = Graphs.sortEdges(vertices, edges);
-            int[] froms = new int[sorted.size()];
-            int[] tos = new int[sorted.size()];
-            int index = 0;
-            for (E e : sorted) {
-                froms[index] = e.from();
-                tos[index] = e.to();
-                index++;
+    // a decision tree file mapped into memory. Only absolute reads are used, so it may be shared by multiple threads
+    private static final class MappedFile {
+        private final ByteBuffer buffer;
+        private final int maxVertices;
+        // the offset and the number of structures of the section of each vertex count
+        private final int[] sectionOffsets;
+        private final int[] sectionSizes;
+
+        MappedFile(ByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+                throw new IOException("Not a decision tree file.");
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException("Unsupported decision tree file version " + buffer.getInt(4) + ".");
+            maxVertices = buffer.getInt(8);
+            int sections = buffer.getInt(12);
+            if (maxVertices < 0 || maxVertices > CanonicalLabeling.MAX_VERTICES
+                    || sections < 0 || HEADER_SIZE + (long) sections * INDEX_ENTRY_SIZE > buffer.limit())
+                throw new IOException("Corrupted decision tree file.");
+
+            sectionOffsets = new int[maxVertices + 1];
+            sectionSizes = new int[maxVertices + 1];
+            for (int section = 0; section < sections; section++) {
+                int entry = HEADER_SIZE + section * INDEX_ENTRY_SIZE;
+                int vertices = buffer.getInt(entry);
+                int size = buffer.getInt(entry + 4);
+                int offset = buffer.getInt(entry + 8);
+                if (vertices < 2 || vertices > maxVertices || size < 0 || offset < 0
+                        || offset + (long) size * SECTION_ENTRY_SIZE > buffer.limit())
+                    throw new IOException("Corrupted decision tree file.");
+                sectionOffsets[vertices] = offset;
+                sectionSizes[vertices] = size;
             }
-            int hash = Objects.hash(Arrays.hashCode(froms), Arrays.hashCode(tos));
-            return new GraphStructure(hash, froms, tos);
         }
 
-        GraphStructure(final int hash, final int[] froms, final int[] tos) {
-            this.hash = hash;
-            this.froms = froms;
-            this.tos = tos;
+        long[] masks(int vertices) {
+            long[] masks = new long[sectionSizes[vertices]];
+            for (int i = 0; i < masks.length; i++)
+                masks[i] = buffer.getLong(sectionOffsets[vertices] + i * SECTION_ENTRY_SIZE);
+            return masks;
+        }
+
+        // finds the record of a structure by binary search over the masks of its section
+        GraphStructureMSTLookup decode(int vertices, long mask) {
+            int low = 0;
+            int high = sectionSizes[vertices] - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int entry = sectionOffsets[vertices] + middle * SECTION_ENTRY_SIZE;
+                long current = buffer.getLong(entry);
+                if (current < mask)
+                    low = middle + 1;
+                else if (current > mask)
+                    high = middle - 1;
+                else
+                    return GraphStructureMSTLookup.decode(buffer, buffer.getInt(entry + 8), vertices, mask);
+            }
+            return null;
+        }
+    }
+
+    // encapsulates which edges a graph contains as the mask of the canonical representative of its isomorphism class
+    // (see CanonicalLabeling), so that it can be used as key in a HashMap for lookup in O(1)
+    private static final class GraphStructure {
+        private final long mask;
+
+        GraphStructure(final long mask) {
+            this.mask = mask;
         }
 
         @Override
@@ -187,38 +885,257 @@ public final class PrecomputedMSTCollection implements Serializable {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             GraphStructure that = (GraphStructure) o;
-            return Arrays.equals(froms, that.froms) && Arrays.equals(tos, that.tos);
+            return mask == that.mask;
         }
 
         @Override
         public int hashCode() {
-            return hash;
+            return Long.hashCode(mask);
         }
     }
 
     // for extensibility
     private interface GraphStructureMSTLookup {
-        <E extends Comparable<? super E>> List<Integer> lookup(List<E> edges);
+        // the kinds of records in a decision tree file
+        int DECISION_TREE = 0;
+
+        <E extends Comparable<? super E>> int[] lookup(List<E> edges);
+
+        <E extends Comparable<? super E>> int[] lookup(List<E> edges, double[] keys);
+
+        void encode(DataOutput out) throws IOException;
+
+        // decodes the record of the structure with the given mask into the lookup that is fastest on this runtime
+        static GraphStructureMSTLookup decode(ByteBuffer buffer, int offset, int vertices, long mask) {
+            switch (buffer.get(offset)) {
+                case DECISION_TREE:
+                    return fastest(vertices, mask, DecisionTreeMSTLookup.decode(buffer, offset + 1));
+                default:
+                    throw new IllegalArgumentException("Unknown record kind " + buffer.get(offset) + ".");
+            }
+        }
     }
 
-    private static final class DecisionTreeMSTLookup implements GraphStructureMSTLookup, Serializable {
-        private static final long serialVersionUID = 1L;
+    // writes the distinct msts as their number followed by the length and the edge indices of each of them
+    private static void encodeMSTs(DataOutput out, List<int[]> msts) throws IOException {
+        out.writeShort(msts.size());
+        for (int[] mst : msts) {
+            out.writeByte(mst.length);
+            for (int index : mst)
+                out.writeByte(index);
+        }
+    }
 
+    private static int[][] decodeMSTs(ByteBuffer buffer, int[] position) {
+        int[][] msts = new int[buffer.getShort(position[0]) & 0xFFFF][];
+        position[0] += 2;
+        for (int i = 0; i < msts.length; i++) {
+            msts[i] = new int[buffer.get(position[0]++)];
+            for (int j = 0; j < msts[i].length; j++)
+                msts[i][j] = buffer.get(position[0]++);
+        }
+        return msts;
+    }
+
+    private static final class DecisionTreeMSTLookup implements GraphStructureMSTLookup {
         // the decision tree for this graph structure
         private final DecisionTree tree;
-        // the bucket lookup table
-        private final Map<Integer, List<Integer>> mstIndices;
+        // the bucket lookup table: mstIndices[bucket] holds the indices of the mst edges
+        private final int[][] mstIndices;
+        // the compiled tree, or the tree itself if it cannot be compiled. Compiled on first use,
+        // so only structures that actually show up pay for it
+        private volatile DecisionTreeCompiler.Classifier classifier;
 
-        DecisionTreeMSTLookup(DecisionTree tree, Map<Integer, List<Integer>> indices) {
+        DecisionTreeMSTLookup(DecisionTree tree, int[][] indices) {
             this.tree = tree;
             this.mstIndices = indices;
         }
 
         // look up the edge indices for the mst for this graph structure
         @Override
-        public <E extends Comparable<? super E>> List<Integer> lookup(List<E> edges) {
-            int bucket = tree.classify(edges);
-            return mstIndices.get(bucket);
+        public <E extends Comparable<? super E>> int[] lookup(List<E> edges) {
+            return mstIndices[tree.classify(edges)];
+        }
+
+        @Override
+        public <E extends Comparable<? super E>> int[] lookup(List<E> edges, double[] keys) {
+            DecisionTreeCompiler.Classifier classifier = this.classifier;
+            if (classifier == null) {
+                classifier = DecisionTreeCompiler.compile(tree);
+                if (classifier == null)
+                    classifier = tree;
+                this.classifier = classifier;
+            }
+            return mstIndices[classifier.classify(edges, keys)];
+        }
+
+        // writes the tree, the distinct msts and the index of the mst of each bucket
+        @Override
+        public void encode(DataOutput out) throws IOException {
+            out.writeByte(DECISION_TREE);
+            tree.encode(out);
+            Map<int[], Integer> ids = new IdentityHashMap<>();
+            List<int[]> msts = new ArrayList<>();
+            for (int[] mst : mstIndices) {
+                if (!ids.containsKey(mst)) {
+                    ids.put(mst, msts.size());
+                    msts.add(mst);
+                }
+            }
+            encodeMSTs(out, msts);
+            for (int[] mst : mstIndices)
+                out.writeShort(ids.get(mst));
+        }
+
+        static DecisionTreeMSTLookup decode(ByteBuffer buffer, int offset) {
+            DecisionTree tree = DecisionTree.decode(buffer, offset);
+            int[] position = {offset + tree.encodedSize()};
+            int[][] msts = decodeMSTs(buffer, position);
+            int[][] mstIndices = new int[1 << tree.depth()][];
+            for (int bucket = 0; bucket < mstIndices.length; bucket++, position[0] += 2)
+                mstIndices[bucket] = msts[buffer.getShort(position[0]) & 0xFFFF];
+            return new DecisionTreeMSTLookup(tree, mstIndices);
+        }
+    }
+
+    // finds the mst of a structure that is too large for a decision tree by sorting its edges and running Kruskal's
+    // algorithm. It can't be encoded, so it is only used by collections that search their trees on demand
+    private static final class KruskalMSTLookup implements GraphStructureMSTLookup {
+        private final int vertices;
+        private final int[] from;
+        private final int[] to;
+
+        KruskalMSTLookup(int vertices, List<WeightedEdge<Integer>> edges) {
+            this.vertices = vertices;
+            this.from = new int[edges.size()];
+            this.to = new int[edges.size()];
+            for (int index = 0; index < edges.size(); index++) {
+                from[index] = edges.get(index).from();
+                to[index] = edges.get(index).to();
+            }
+        }
+
+        @Override
+        public <E extends Comparable<? super E>> int[] lookup(List<E> edges) {
+            return mst((i, j) -> edges.get(i).compareTo(edges.get(j)));
+        }
+
+        // equal keys are ordered by the edges themselves
+        @Override
+        public <E extends Comparable<? super E>> int[] lookup(List<E> edges, double[] keys) {
+            return mst((i, j) -> keys[i] < keys[j] ? -1 : keys[i] > keys[j] ? 1 : edges.get(i).compareTo(edges.get(j)));
+        }
+
+        private int[] mst(Comparator<Integer> order) {
+            Integer[] sorted = new Integer[from.length];
+            for (int index = 0; index < sorted.length; index++)
+                sorted[index] = index;
+            Arrays.sort(sorted, order);
+            int[] byRank = new int[sorted.length];
+            for (int rank = 0; rank < byRank.length; rank++)
+                byRank[rank] = sorted[rank];
+            return indices(kruskal(from, to, byRank, new int[vertices]));
+        }
+
+        @Override
+        public void encode(DataOutput out) {
+            throw new UnsupportedOperationException("Structures without a decision tree cannot be stored.");
+        }
+    }
+
+    // finds the mst through the rank of the order of the edge weights: the edges are sorted by a sorting network and
+    // the Lehmer code of their order indexes a table of the msts of all permutations. The table has m! entries,
+    // so this only pays off for very few edges, where it may beat walking a decision tree. The tree is kept for
+    // encoding, since files store trees only
+    private static final class RankTableMSTLookup implements GraphStructureMSTLookup {
+        static final int MAX_EDGES = 6;
+
+        // NETWORKS[m] are the comparators of an optimal sorting network for m elements, as pairs of positions
+        private static final int[][] NETWORKS = {
+                {},
+                {},
+                {0, 1},
+                {0, 2, 0, 1, 1, 2},
+                {0, 1, 2, 3, 0, 2, 1, 3, 1, 2},
+                {0, 1, 3, 4, 2, 4, 2, 3, 0, 3, 0, 2, 1, 4, 1, 3, 1, 2},
+                {1, 2, 4, 5, 0, 2, 3, 5, 0, 1, 3, 4, 1, 4, 0, 3, 2, 5, 1, 3, 2, 4, 2, 3}
+        };
+        private static final int[] FACTORIALS = {1, 1, 2, 6, 24, 120, 720};
+
+        private final DecisionTreeMSTLookup tree;
+        private final int edges;
+        // outcomes[rank] is the index of the mst of the permutation with the given Lehmer code
+        private final short[] outcomes;
+        private final int[][] msts;
+
+        RankTableMSTLookup(int edges, DecisionTreeMSTLookup tree, OutcomeTable table) {
+            this.tree = tree;
+            this.edges = edges;
+            this.outcomes = new short[table.outcomes.length];
+            for (int rank = 0; rank < outcomes.length; rank++)
+                this.outcomes[rank] = (short) table.outcomes[rank];
+            this.msts = new int[table.ids.size][];
+            for (int id = 0; id < msts.length; id++)
+                msts[id] = indices(table.ids.msts[id]);
+        }
+
+        @Override
+        public <E extends Comparable<? super E>> int[] lookup(List<E> elements) {
+            int[] order = identity();
+            int[] network = NETWORKS[edges];
+            for (int c = 0; c < network.length; c += 2) {
+                int a = order[network[c]];
+                int b = order[network[c + 1]];
+                if (elements.get(b).compareTo(elements.get(a)) < 0) {
+                    order[network[c]] = b;
+                    order[network[c + 1]] = a;
+                }
+            }
+            return msts[outcomes[rank(order)] & 0xFFFF];
+        }
+
+        @Override
+        public <E extends Comparable<? super E>> int[] lookup(List<E> elements, double[] keys) {
+            int[] order = identity();
+            int[] network = NETWORKS[edges];
+            for (int c = 0; c < network.length; c += 2) {
+                int a = order[network[c]];
+                int b = order[network[c + 1]];
+                // the same tie breaking as DecisionTree#classify(List, double[])
+                if (keys[b] < keys[a] || (!(keys[b] > keys[a]) && elements.get(b).compareTo(elements.get(a)) < 0)) {
+                    order[network[c]] = b;
+                    order[network[c + 1]] = a;
+                }
+            }
+            return msts[outcomes[rank(order)] & 0xFFFF];
+        }
+
+        private int[] identity() {
+            int[] order = new int[edges];
+            for (int i = 0; i < edges; i++)
+                order[i] = i;
+            return order;
+        }
+
+        // order[r] is the edge with rank r, the result is the Lehmer code of the ranks of the edges
+        private int rank(int[] order) {
+            int[] weight = new int[edges];
+            for (int r = 0; r < edges; r++)
+                weight[order[r]] = r;
+            int rank = 0;
+            for (int i = 0; i < edges; i++) {
+                int smaller = 0;
+                for (int j = i + 1; j < edges; j++)
+                    if (weight[j] < weight[i])
+                        smaller++;
+                rank += smaller * FACTORIALS[edges - 1 - i];
+            }
+            return rank;
+        }
+
+        @Override
+        public void encode(DataOutput out) throws IOException {
+            tree.encode(out);
         }
     }
 }
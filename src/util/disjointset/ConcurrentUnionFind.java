@@ -0,0 +1,89 @@
+package util.disjointset;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ *
+ * Provides a lock-free implementation of the DisjointSet interface that can be shared between threads, after Jayanti
+ * and Tarjan.
+ * The parents are kept in an AtomicIntegerArray. A union links the root of lower priority to the other one by a single
+ * compareAndSet and retries if either root has been linked in the meantime. The priorities are a random permutation of
+ * the elements, so a root is never linked below a root of lower priority and the trees have logarithmic height in
+ * expectation. A find splits the path it follows: every element on it is pointed to its grandparent by a
+ * compareAndSet that may fail without being retried, so that find is wait-free.
+ * All operations are linearizable.
+ */
+public class ConcurrentUnionFind implements DisjointSet {
+
+    private final AtomicIntegerArray parent;
+    private final int[] priority;
+    private final AtomicInteger distinct;
+
+    /**
+     * Creates a new ConcurrentUnionFind data structure of the specified size
+     * @param size the size of the ConcurrentUnionFind data structure
+     */
+    public ConcurrentUnionFind(final int size) {
+        distinct = new AtomicInteger(size);
+        parent = new AtomicIntegerArray(size);
+        priority = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent.set(i, i);
+            priority[i] = i;
+        }
+        // Fisher-Yates shuffle
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = priority[i];
+            priority[i] = priority[j];
+            priority[j] = temp;
+        }
+    }
+
+    @Override
+    public int distinct() {
+        return distinct.get();
+    }
+
+    @Override
+    public int size() {
+        return parent.length();
+    }
+
+    @Override
+    public int find(int i) {
+        while (true) {
+            int p = parent.get(i);
+            if (p == i)
+                return i;
+            // path splitting, another thread may have changed the parent already, which is just as good
+            int grandparent = parent.get(p);
+            if (grandparent != p)
+                parent.compareAndSet(i, p, grandparent);
+            i = p;
+        }
+    }
+
+    @Override
+    public boolean union(final int i, final int j) {
+        while (true) {
+            int iroot = find(i), jroot = find(j);
+            // sets are never split, so i and j have been in the same set since jroot has been found
+            if (iroot == jroot)
+                return false;
+            if (priority[iroot] > priority[jroot]) {
+                int temp = iroot;
+                iroot = jroot;
+                jroot = temp;
+            }
+            // fails iff iroot is no root anymore, then find the roots again
+            if (parent.compareAndSet(iroot, iroot, jroot)) {
+                distinct.decrementAndGet();
+                return true;
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ public interface DisjointSet {
      * of i and j will be represented by the same element.
      * @param i member of the first set
      * @param j member of the second set
+     * @return true iff i and j were in different sets before
      */
-    void union(int i, int j);
+    boolean union(int i, int j);
 }
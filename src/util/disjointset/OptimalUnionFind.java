@@ -50,9 +50,9 @@ public class OptimalUnionFind implements DisjointSet {
     }
 
     @Override
-    public void union(final int i, final int j) {
+    public boolean union(final int i, final int j) {
         final int iroot = find(i), jroot = find(j);
-        if (iroot == jroot) return;
+        if (iroot == jroot) return false;
         if (info[iroot] < info[jroot]) {
             info[jroot] = info[iroot] + info[jroot];
             info[jroot] = iroot;
@@ -61,5 +61,6 @@ public class OptimalUnionFind implements DisjointSet {
             info[iroot] = jroot;
         }
         this.distinct--;
+        return true;
     }
 }
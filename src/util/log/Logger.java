@@ -2,7 +2,7 @@ package util.log;
 
 public final class Logger {
 
-    private static boolean active = false;
+    private static volatile boolean active = false;
 
     private Logger() {}
 
@@ -1,7 +1,41 @@
 package util.queue;
 
+import java.util.Collection;
+
 public interface ExtendedPriorityQueue<T> extends PriorityQueue<T> {
 	
+    /**
+     * Restores the heap order after the key of the element with the given id has been decreased.
+     * @param id the id of an element that is still in the queue. Implementations may reuse the id of a popped
+     *           element for a later insertion, so decreasing a stale id may silently move an unrelated element.
+     */
     void decrease(long id);
+
+    /**
+     * Inserts the element and returns its id. The id is only valid until the element has been popped, since
+     * implementations that pool their nodes may hand it out again.
+     * @param element the element to be inserted
+     * @return the id of the element
+     */
     long insertWithId(T element);
+
+    /**
+     * Inserts all elements at once. The elements receive consecutive ids in the iteration order of the collection,
+     * so the ids of all of them are known from the id of the first one. Implementations build the heap in O(n)
+     * where they can, instead of inserting the elements one at a time.
+     * @param elements the elements to be inserted
+     * @return the id of the first element, the i-th element has the id first + i
+     */
+    default long insertAll(Collection<? extends T> elements) {
+        long first = -1;
+        long expected = -1;
+        for (T element : elements) {
+            long id = insertWithId(element);
+            if (first == -1)
+                first = expected = id;
+            if (id != expected++)
+                throw new IllegalStateException("Ids are not consecutive.");
+        }
+        return first;
+    }
 }
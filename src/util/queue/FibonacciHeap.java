@@ -4,16 +4,23 @@ import java.util.*;
 
 public class FibonacciHeap<T> implements ExtendedPriorityQueue<T> {
 
-    private final Map<Long, Node<T>> idToNode;
+    // the id of a node is its index in this list
+    private final List<Node<T>> idToNode;
     private final Comparator<? super T> comparator;
+    // the buckets used by consolidate, kept between calls and only grown when the heap has grown
+    private Node<T>[] heapOfDegree = newBuckets(1);
 
     private Node<T> min = null;
     private int size = 0;
-    private long nextId = 0;
 
     public FibonacciHeap(final Comparator<? super T> c) {
         comparator = c;
-        idToNode = new HashMap<>();
+        idToNode = new ArrayList<>();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newBuckets(int length) {
+        return (Node<T>[]) new Node<?>[length];
     }
 
     public static <S extends Comparable<? super S>> FibonacciHeap<S> naturallyOrdered() {
@@ -50,9 +57,9 @@ public class FibonacciHeap<T> implements ExtendedPriorityQueue<T> {
     private void consolidate() {
         // number of components is bounded by log[phi](size)
         int max = (int) Math.ceil(Math.log(size) / Math.log(1.5));
-        ArrayList<Node<T>> heapOfDegree = new ArrayList<>();
-        for (int i = 0; i < max; i++)
-            heapOfDegree.add(null);
+        if (heapOfDegree.length < max)
+            heapOfDegree = newBuckets(max);
+        int maxDegree = -1;
         // for each node in the root list
         Node<T> start = min;
         // remember starting point
@@ -67,9 +74,9 @@ public class FibonacciHeap<T> implements ExtendedPriorityQueue<T> {
             // remove any links from x
             x.next = x;
             x.prev = x;
-            while (heapOfDegree.get(d) != null) {
+            while (heapOfDegree[d] != null) {
                 // node of same rank
-                Node<T> y = heapOfDegree.get(d);
+                Node<T> y = heapOfDegree[d];
                 // let y have greater key
                 if (comparator.compare(x.element, y.element) > 0) {
                     Node<T> temp = x;
@@ -77,11 +84,12 @@ public class FibonacciHeap<T> implements ExtendedPriorityQueue<T> {
                     y = temp;
                 }
                 link(y, x);
-                heapOfDegree.set(d, null);
+                heapOfDegree[d] = null;
                 d = d + 1;
             }
             // remove x from root list
-            heapOfDegree.set(d, x);
+            heapOfDegree[d] = x;
+            maxDegree = Math.max(maxDegree, d);
 
             // advance to next node
             current = next;
@@ -90,10 +98,12 @@ public class FibonacciHeap<T> implements ExtendedPriorityQueue<T> {
         // reset min
         min = null;
 
-        for (Node<T> heap : heapOfDegree) {
-            if (heap == null)
+        // empty the buckets again for the next consolidation
+        for (int d = 0; d <= maxDegree; d++) {
+            if (heapOfDegree[d] == null)
                 continue;
-            insertIntoRootList(heap);
+            insertIntoRootList(heapOfDegree[d]);
+            heapOfDegree[d] = null;
         }
     }
 
@@ -162,14 +172,54 @@ public class FibonacciHeap<T> implements ExtendedPriorityQueue<T> {
 
     @Override
     public long insertWithId(T element) {
-        final long id = nextId++;
+        final long id = idToNode.size();
         Node<T> node = new Node<>(element);
         insertIntoRootList(node);
-        idToNode.put(id, node);
+        idToNode.add(node);
         size++;
         return id;
     }
 
+    /**
+     * Links the new nodes into a list and splices it into the root list at once, the consolidation is left to the
+     * next pop as usual.
+     */
+    @Override
+    public long insertAll(Collection<? extends T> elements) {
+        final long first = idToNode.size();
+        Node<T> head = null;
+        Node<T> smallest = null;
+        for (T element : elements) {
+            Node<T> node = new Node<>(element);
+            if (head == null) {
+                head = node;
+                node.next = node;
+                node.prev = node;
+            } else {
+                insertAfter(head.prev, node);
+            }
+            if (smallest == null || comparator.compare(smallest.element, element) > 0)
+                smallest = node;
+            idToNode.add(node);
+        }
+        if (head == null)
+            return first;
+        size += elements.size();
+        if (min == null) {
+            min = smallest;
+            return first;
+        }
+        // splice the new list in after min
+        Node<T> tail = head.prev;
+        tail.next = min.next;
+        min.next.prev = tail;
+        min.next = head;
+        head.prev = min;
+        if (comparator.compare(min.element, smallest.element) > 0)
+            min = smallest;
+        return first;
+    }
+
     @Override
     public int size() {
         return size;
@@ -208,9 +258,9 @@ public class FibonacciHeap<T> implements ExtendedPriorityQueue<T> {
 
     @Override
     public void decrease(long id) {
-        if (!idToNode.containsKey(id))
+        if (id < 0 || id >= idToNode.size())
             throw new NoSuchElementException("Invalid identifier.");
-        Node<T> node = idToNode.get(id);
+        Node<T> node = idToNode.get((int) id);
         Node<T> parent = node.parent;
         // check if heap property was violated
         if (parent != null && comparator.compare(node.element, parent.element) < 0) {
@@ -0,0 +1,206 @@
+package util.queue;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A bucket queue implementation of {@link IndexedPriorityQueue} for keys from a bounded range.<br>
+ * Every key of the range has a bucket, an intrusive doubly linked list of handles stored in int arrays at the index of
+ * each handle, so inserting and decreasing a key only link a handle. The non-empty buckets are marked in a radix tree
+ * of 64 bit words: a bit in the lowest level marks a bucket and a bit in any higher level marks a non-zero word below
+ * it. The smallest key is found by following the lowest set bit from the root down, so a pop takes O(log_64 C) for
+ * a range of C keys, which is at most 11 steps and usually 3 or 4.<br>
+ * Unlike a radix heap, the queue is not monotone: a key may be smaller than the last one popped, as it happens in
+ * Prim's algorithm.
+ */
+public final class IndexedBucketQueue implements IndexedPriorityQueue {
+
+    private static final int NONE = -1;
+    // the number of bits of the index of a bit in a word
+    private static final int SHIFT = 6;
+
+    private final long minKey;
+    private final long maxKey;
+
+    private final long[] keys;
+    private final int[] next;
+    private final int[] prev;
+    private final boolean[] contained;
+
+    // the first handle in the bucket of each key relative to minKey
+    private final int[] buckets;
+    // levels[0] marks the non-empty buckets, levels[i + 1] the non-zero words of levels[i]
+    private final long[][] levels;
+
+    private int size = 0;
+
+    /**
+     * Creates an empty queue.
+     * @param capacity the number of handles, the valid handles are 0 to capacity - 1
+     * @param minKey the smallest key that can be inserted
+     * @param maxKey the largest key that can be inserted
+     */
+    public IndexedBucketQueue(final int capacity, final long minKey, final long maxKey) {
+        if (maxKey < minKey || maxKey - minKey < 0 || maxKey - minKey >= Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The key range must be non-empty and have less than 2^31 keys.");
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+        keys = new long[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        contained = new boolean[capacity];
+
+        int range = (int) (maxKey - minKey + 1);
+        buckets = new int[range];
+        for (int b = 0; b < range; b++)
+            buckets[b] = NONE;
+
+        int depth = 1;
+        for (long words = wordsFor(range); words > 1; words = wordsFor(words))
+            depth++;
+        levels = new long[depth][];
+        long bits = range;
+        for (int i = 0; i < depth; i++) {
+            levels[i] = new long[(int) wordsFor(bits)];
+            bits = levels[i].length;
+        }
+    }
+
+    private static long wordsFor(final long bits) {
+        return (bits + Long.SIZE - 1) >>> SHIFT;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean contains(final int handle) {
+        return contained[handle];
+    }
+
+    @Override
+    public long keyOf(final int handle) {
+        if (!contains(handle))
+            throw new NoSuchElementException("Handle is not in the queue.");
+        return keys[handle];
+    }
+
+    @Override
+    public void insert(final int handle, final long key) {
+        if (contains(handle))
+            throw new IllegalArgumentException("Handle is already in the queue.");
+        checkRange(key);
+        keys[handle] = key;
+        contained[handle] = true;
+        link(handle);
+        size++;
+    }
+
+    @Override
+    public void decreaseKey(final int handle, final long key) {
+        if (!contains(handle))
+            throw new NoSuchElementException("Handle is not in the queue.");
+        if (key > keys[handle])
+            throw new IllegalArgumentException("Key must not increase.");
+        checkRange(key);
+        unlink(handle);
+        keys[handle] = key;
+        link(handle);
+    }
+
+    @Override
+    public boolean offer(final int handle, final long key) {
+        if (contained[handle] && key >= keys[handle])
+            return false;
+        checkRange(key);
+        if (contained[handle]) {
+            unlink(handle);
+        } else {
+            contained[handle] = true;
+            size++;
+        }
+        keys[handle] = key;
+        link(handle);
+        return true;
+    }
+
+    @Override
+    public int peek() {
+        if (size == 0)
+            throw new NoSuchElementException("Queue is empty.");
+        // follow the lowest set bit from the root down to the bucket
+        int index = 0;
+        for (int i = levels.length - 1; i >= 0; i--)
+            index = (index << SHIFT) + Long.numberOfTrailingZeros(levels[i][index]);
+        return buckets[index];
+    }
+
+    @Override
+    public int pop() {
+        int handle = peek();
+        unlink(handle);
+        contained[handle] = false;
+        size--;
+        return handle;
+    }
+
+    @Override
+    public void clear() {
+        while (size > 0)
+            pop();
+    }
+
+    private void checkRange(final long key) {
+        if (key < minKey || key > maxKey)
+            throw new IllegalArgumentException("Key is out of range.");
+    }
+
+    // adds the handle to the front of the bucket of its key
+    private void link(final int handle) {
+        int b = (int) (keys[handle] - minKey);
+        int head = buckets[b];
+        prev[handle] = NONE;
+        next[handle] = head;
+        buckets[b] = handle;
+        if (head != NONE) {
+            prev[head] = handle;
+            return;
+        }
+        // the bucket has been empty, mark it and every word above that has been zero
+        for (long[] level : levels) {
+            int word = b >>> SHIFT;
+            boolean wasZero = level[word] == 0;
+            level[word] |= 1L << b;
+            if (!wasZero)
+                break;
+            b = word;
+        }
+    }
+
+    private void unlink(final int handle) {
+        int b = (int) (keys[handle] - minKey);
+        if (next[handle] != NONE)
+            prev[next[handle]] = prev[handle];
+        if (prev[handle] != NONE) {
+            next[prev[handle]] = next[handle];
+            return;
+        }
+        buckets[b] = next[handle];
+        if (buckets[b] != NONE)
+            return;
+        // the bucket is empty now, unmark it and every word above that has become zero
+        for (long[] level : levels) {
+            int word = b >>> SHIFT;
+            level[word] &= ~(1L << b);
+            if (level[word] != 0)
+                break;
+            b = word;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package util.queue;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A d-ary min-heap implementation of {@link IndexedPriorityQueue}.<br>
+ * In contrast to {@link KAryHeap} the heap array and the position of every handle within it are plain int arrays and
+ * both sift operations are iterative, so none of the operations allocates or hashes.
+ * Keys that are doubles can be stored through {@link #key(double)}, which preserves their order.
+ */
+public final class IndexedDAryHeap implements IndexedPriorityQueue {
+
+    private static final int ABSENT = -1;
+
+    private final int d;
+    // heap[i] is the handle stored at slot i
+    private final int[] heap;
+    // position[h] is the slot of handle h or ABSENT
+    private final int[] position;
+    private final long[] keys;
+    private int size = 0;
+
+    /**
+     * Creates an empty heap.
+     * @param d the number of children of each node
+     * @param capacity the number of handles, the valid handles are 0 to capacity - 1
+     */
+    public IndexedDAryHeap(final int d, final int capacity) {
+        if (d < 2)
+            throw new IllegalArgumentException("D must be at least 2.");
+        this.d = d;
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new long[capacity];
+        for (int h = 0; h < capacity; h++)
+            position[h] = ABSENT;
+    }
+
+    /**
+     * Maps a double to a long such that comparing the longs is the same as comparing the doubles by
+     * {@link Double#compare}, i.e. -0.0 is smaller than 0.0 and NaN is larger than everything else.
+     * @param value the double
+     * @return the order-preserving long key of the double
+     */
+    public static long key(final double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean empty() {
+        return size == 0;
+    }
+
+    @Override
+    public int capacity() {
+        return position.length;
+    }
+
+    @Override
+    public boolean contains(final int handle) {
+        return position[handle] != ABSENT;
+    }
+
+    @Override
+    public long keyOf(final int handle) {
+        if (!contains(handle))
+            throw new NoSuchElementException("Handle is not in the heap.");
+        return keys[handle];
+    }
+
+    @Override
+    public void insert(final int handle, final long key) {
+        if (contains(handle))
+            throw new IllegalArgumentException("Handle is already in the heap.");
+        keys[handle] = key;
+        siftUp(size++, handle);
+    }
+
+    @Override
+    public void decreaseKey(final int handle, final long key) {
+        if (!contains(handle))
+            throw new NoSuchElementException("Handle is not in the heap.");
+        if (key > keys[handle])
+            throw new IllegalArgumentException("Key must not increase.");
+        keys[handle] = key;
+        siftUp(position[handle], handle);
+    }
+
+    @Override
+    public boolean offer(final int handle, final long key) {
+        if (!contains(handle)) {
+            insert(handle, key);
+            return true;
+        }
+        if (key < keys[handle]) {
+            keys[handle] = key;
+            siftUp(position[handle], handle);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int peek() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        return heap[0];
+    }
+
+    @Override
+    public int pop() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        int min = heap[0];
+        position[min] = ABSENT;
+        int last = heap[--size];
+        if (size > 0)
+            siftDown(0, last);
+        return min;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++)
+            position[heap[i]] = ABSENT;
+        size = 0;
+    }
+
+    // moves the hole at the given slot up until the handle fits into it
+    private void siftUp(int slot, final int handle) {
+        final long key = keys[handle];
+        while (slot > 0) {
+            int parent = (slot - 1) / d;
+            int above = heap[parent];
+            if (keys[above] <= key)
+                break;
+            place(slot, above);
+            slot = parent;
+        }
+        place(slot, handle);
+    }
+
+    // moves the hole at the given slot down until the handle fits into it
+    private void siftDown(int slot, final int handle) {
+        final long key = keys[handle];
+        while (true) {
+            int leftmost = d * slot + 1;
+            if (leftmost >= size)
+                break;
+            int bound = Math.min(leftmost + d, size);
+            int smallest = leftmost;
+            long smallestKey = keys[heap[leftmost]];
+            for (int i = leftmost + 1; i < bound; i++) {
+                long k = keys[heap[i]];
+                if (k < smallestKey) {
+                    smallest = i;
+                    smallestKey = k;
+                }
+            }
+            if (key <= smallestKey)
+                break;
+            place(slot, heap[smallest]);
+            slot = smallest;
+        }
+        place(slot, handle);
+    }
+
+    private void place(final int slot, final int handle) {
+        heap[slot] = handle;
+        position[handle] = slot;
+    }
+}
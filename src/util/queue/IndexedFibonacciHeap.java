@@ -0,0 +1,261 @@
+package util.queue;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A Fibonacci heap implementation of {@link IndexedPriorityQueue}, see {@link FibonacciHeap}.<br>
+ * The handles are the nodes: all links of a node are stored in int arrays at the index of its handle, so the node pool
+ * is allocated once with the heap and decreaseKey is O(1) amortized without any lookup. Consolidation reuses a single
+ * array of degree buckets, sized once for the maximum degree a heap of this capacity can reach.
+ */
+public final class IndexedFibonacciHeap implements IndexedPriorityQueue {
+
+    private static final int NONE = -1;
+    private static final double PHI = (1 + Math.sqrt(5)) / 2;
+
+    private final long[] keys;
+    private final int[] parent;
+    private final int[] child;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] degree;
+    private final boolean[] marked;
+    // a handle is in the heap iff its stamp equals the current epoch, so clearing the heap takes constant time
+    private final int[] stamp;
+    private int epoch = 1;
+
+    // heapOfDegree[d] is the root of degree d found so far during consolidation
+    private final int[] heapOfDegree;
+
+    private int min = NONE;
+    private int size = 0;
+
+    /**
+     * Creates an empty heap.
+     * @param capacity the number of handles, the valid handles are 0 to capacity - 1
+     */
+    public IndexedFibonacciHeap(final int capacity) {
+        keys = new long[capacity];
+        parent = new int[capacity];
+        child = new int[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        degree = new int[capacity];
+        marked = new boolean[capacity];
+        stamp = new int[capacity];
+        // a node of degree d has at least phi^d descendants
+        heapOfDegree = new int[(int) (Math.log(Math.max(2, capacity)) / Math.log(PHI)) + 2];
+        for (int d = 0; d < heapOfDegree.length; d++)
+            heapOfDegree[d] = NONE;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean contains(final int handle) {
+        return stamp[handle] == epoch;
+    }
+
+    @Override
+    public long keyOf(final int handle) {
+        if (!contains(handle))
+            throw new NoSuchElementException("Handle is not in the heap.");
+        return keys[handle];
+    }
+
+    @Override
+    public void insert(final int handle, final long key) {
+        if (contains(handle))
+            throw new IllegalArgumentException("Handle is already in the heap.");
+        stamp[handle] = epoch;
+        keys[handle] = key;
+        child[handle] = NONE;
+        degree[handle] = 0;
+        marked[handle] = false;
+        insertIntoRootList(handle);
+        size++;
+    }
+
+    @Override
+    public void decreaseKey(final int handle, final long key) {
+        if (!contains(handle))
+            throw new NoSuchElementException("Handle is not in the heap.");
+        if (key > keys[handle])
+            throw new IllegalArgumentException("Key must not increase.");
+        keys[handle] = key;
+        int p = parent[handle];
+        // check if heap property was violated
+        if (p != NONE && key < keys[p]) {
+            cut(handle, p);
+            cascadingCut(p);
+        }
+        // adjust min
+        if (key < keys[min])
+            min = handle;
+    }
+
+    @Override
+    public int peek() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        return min;
+    }
+
+    @Override
+    public int pop() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        int z = min;
+        // add each child of z to the root list
+        int current = child[z];
+        if (current != NONE) {
+            do {
+                // next[current] will be overridden in insertIntoRootList
+                int following = next[current];
+                insertIntoRootList(current);
+                current = following;
+            } while (parent[current] != NONE);
+        }
+        // remove z from root list
+        unlink(z);
+        if (z == next[z]) {
+            min = NONE;
+        } else {
+            min = next[z];
+            consolidate();
+        }
+        stamp[z] = 0;
+        size--;
+        return z;
+    }
+
+    @Override
+    public void clear() {
+        if (++epoch == 0) {
+            // the stamps would become ambiguous once the epoch wraps around
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        min = NONE;
+        size = 0;
+    }
+
+    private void insertIntoRootList(final int node) {
+        parent[node] = NONE;
+        if (min == NONE) {
+            next[node] = node;
+            prev[node] = node;
+            min = node;
+        } else {
+            // insert node after min
+            next[node] = next[min];
+            prev[node] = min;
+            prev[next[min]] = node;
+            next[min] = node;
+            if (keys[node] < keys[min])
+                min = node;
+        }
+    }
+
+    private void unlink(final int node) {
+        prev[next[node]] = prev[node];
+        next[prev[node]] = next[node];
+    }
+
+    // merge heaps of equal degree (see cormen et al)
+    private void consolidate() {
+        int maxDegree = -1;
+        int start = min;
+        int current = start;
+        do {
+            // next[current] will be changed, so we store it
+            int following = next[current];
+
+            int x = current;
+            int d = degree[x];
+            // remove any links from x
+            next[x] = x;
+            prev[x] = x;
+            while (heapOfDegree[d] != NONE) {
+                // node of same degree
+                int y = heapOfDegree[d];
+                // let y have greater key
+                if (keys[x] > keys[y]) {
+                    int temp = x;
+                    x = y;
+                    y = temp;
+                }
+                link(y, x);
+                heapOfDegree[d] = NONE;
+                d++;
+            }
+            heapOfDegree[d] = x;
+            maxDegree = Math.max(maxDegree, d);
+
+            current = following;
+        } while (current != start);
+
+        // rebuild the root list and reset the buckets for the next consolidation
+        min = NONE;
+        for (int d = 0; d <= maxDegree; d++) {
+            if (heapOfDegree[d] == NONE)
+                continue;
+            insertIntoRootList(heapOfDegree[d]);
+            heapOfDegree[d] = NONE;
+        }
+    }
+
+    // make the detached root y a child of x (see cormen et al)
+    private void link(final int y, final int x) {
+        parent[y] = x;
+        if (child[x] == NONE) {
+            child[x] = y;
+            next[y] = y;
+            prev[y] = y;
+        } else {
+            int first = child[x];
+            next[y] = next[first];
+            prev[y] = first;
+            prev[next[first]] = y;
+            next[first] = y;
+        }
+        degree[x]++;
+        marked[y] = false;
+    }
+
+    // cut x from y's children and add it to the root list (see cormen et al)
+    private void cut(final int x, final int y) {
+        if (x == next[x]) {
+            child[y] = NONE;
+        } else {
+            unlink(x);
+            if (child[y] == x)
+                child[y] = next[x];
+        }
+        degree[y]--;
+        insertIntoRootList(x);
+        marked[x] = false;
+    }
+
+    // continue cutting marked nodes (see cormen et al)
+    private void cascadingCut(int node) {
+        while (parent[node] != NONE) {
+            if (!marked[node]) {
+                marked[node] = true;
+                return;
+            }
+            int p = parent[node];
+            cut(node, p);
+            node = p;
+        }
+    }
+}
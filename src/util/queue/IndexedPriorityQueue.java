@@ -0,0 +1,94 @@
+package util.queue;
+
+/**
+ * A priority queue over the integer handles 0 to capacity - 1, each of which is associated with a primitive long key.
+ * <br>
+ * The caller names the elements itself, so a queue over the vertices of a graph simply uses the vertices as handles
+ * and no handle ever has to be looked up. This is the interface through which the MST algorithms use primitive heaps.
+ */
+public interface IndexedPriorityQueue {
+
+    /**
+     * Returns the number of handles in the queue.
+     * @return the size of the queue
+     */
+    int size();
+
+    /**
+     * Returns whether the queue is empty.
+     * @return true iff the queue is empty
+     */
+    default boolean empty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns the number of handles, the valid handles are 0 to capacity - 1.
+     * @return the capacity of the queue
+     */
+    int capacity();
+
+    /**
+     * Returns whether the handle is currently stored in the queue.
+     * @param handle the handle
+     * @return true iff the handle is in the queue
+     */
+    boolean contains(int handle);
+
+    /**
+     * Returns the key of a handle that is in the queue.
+     * @param handle the handle
+     * @return the current key of the handle
+     */
+    long keyOf(int handle);
+
+    /**
+     * Inserts a handle that is not yet in the queue.
+     * @param handle the handle
+     * @param key the key of the handle
+     */
+    void insert(int handle, long key);
+
+    /**
+     * Lowers the key of a handle that is in the queue.
+     * @param handle the handle
+     * @param key the new key, must not be larger than the current one
+     */
+    void decreaseKey(int handle, long key);
+
+    /**
+     * Inserts the handle if it isn't in the queue yet and lowers its key otherwise, as long as the new key is smaller.
+     * This is the relaxation step of Prim-like algorithms.
+     * @param handle the handle
+     * @param key the candidate key
+     * @return true iff the key of the handle has been set
+     */
+    default boolean offer(int handle, long key) {
+        if (!contains(handle)) {
+            insert(handle, key);
+            return true;
+        }
+        if (key < keyOf(handle)) {
+            decreaseKey(handle, key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the handle with the smallest key without removing it.
+     * @return the handle with the smallest key
+     */
+    int peek();
+
+    /**
+     * Removes the handle with the smallest key.
+     * @return the handle with the smallest key
+     */
+    int pop();
+
+    /**
+     * Removes all handles.
+     */
+    void clear();
+}
@@ -0,0 +1,107 @@
+package util.queue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Provides an {@link IndexedPriorityQueue} on top of any {@link ExtendedPriorityQueue}, so that the MST algorithms
+ * can run with the comparator based heaps as well.<br>
+ * The handles are stored as elements of the underlying queue, which orders them by their keys in an array. A handle
+ * is in the queue iff its stamp equals the current epoch, so clearing replaces the underlying queue and starts a new
+ * epoch in O(1) instead of popping every handle.
+ */
+public final class IndexedQueueAdapter implements IndexedPriorityQueue {
+
+    private final long[] keys;
+    // the id of each handle in the underlying queue
+    private final long[] ids;
+    private final int[] stamp;
+    private int epoch = 1;
+
+    private final Function<Comparator<Integer>, ? extends ExtendedPriorityQueue<Integer>> factory;
+    private final Comparator<Integer> byKey;
+    private ExtendedPriorityQueue<Integer> queue;
+
+    /**
+     * Creates an empty queue.
+     * @param capacity the number of handles, the valid handles are 0 to capacity - 1
+     * @param factory creates the underlying queue for a given comparator, e.g. {@code PairingHeap::new}
+     */
+    public IndexedQueueAdapter(final int capacity,
+                               final Function<Comparator<Integer>, ? extends ExtendedPriorityQueue<Integer>> factory) {
+        keys = new long[capacity];
+        ids = new long[capacity];
+        stamp = new int[capacity];
+        this.factory = factory;
+        byKey = (a, b) -> Long.compare(keys[a], keys[b]);
+        queue = factory.apply(byKey);
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public int capacity() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean contains(final int handle) {
+        return stamp[handle] == epoch;
+    }
+
+    @Override
+    public long keyOf(final int handle) {
+        if (!contains(handle))
+            throw new NoSuchElementException("Handle is not in the queue.");
+        return keys[handle];
+    }
+
+    @Override
+    public void insert(final int handle, final long key) {
+        if (contains(handle))
+            throw new IllegalArgumentException("Handle is already in the queue.");
+        keys[handle] = key;
+        stamp[handle] = epoch;
+        ids[handle] = queue.insertWithId(handle);
+    }
+
+    @Override
+    public void decreaseKey(final int handle, final long key) {
+        if (!contains(handle))
+            throw new NoSuchElementException("Handle is not in the queue.");
+        if (key > keys[handle])
+            throw new IllegalArgumentException("Key must not increase.");
+        keys[handle] = key;
+        queue.decrease(ids[handle]);
+    }
+
+    @Override
+    public int peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public int pop() {
+        int handle = queue.pop();
+        stamp[handle] = 0;
+        return handle;
+    }
+
+    /**
+     * Removes all handles in O(1) by replacing the underlying queue. The ids of the old queue are never used again.
+     */
+    @Override
+    public void clear() {
+        queue = factory.apply(byKey);
+        // 0 marks the handles that have been popped, so the epochs wrap around to 1
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+    }
+}
@@ -110,6 +110,26 @@ public class KAryHeap<T> implements ExtendedPriorityQueue<T> {
         return id;
     }
 
+    /**
+     * Appends all elements and restores the heap property bottom-up, which takes O(n) time instead of O(n log n).
+     * If the heap is much larger than the number of new elements, they are sifted up one at a time instead.
+     */
+    @Override
+    public long insertAll(final Collection<? extends T> elements) {
+        long first = nextId;
+        int existing = size();
+        if (elements.size() < existing) {
+            for (T element : elements)
+                insertWithId(element);
+            return first;
+        }
+        for (T element : elements)
+            emplace(new Node<>(element, nextId++));
+        for (int i = (size() - 2) / K; i >= 0; i--)
+            siftDown(i);
+        return first;
+    }
+
     @Override
     public T peek() {
         if (size() == 0)
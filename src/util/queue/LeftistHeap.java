@@ -0,0 +1,167 @@
+package util.queue;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * A leftist heap (Crane), a binary tree in which the rank of a node, the length of the path to its nearest empty
+ * subtree, is at least the rank of its right sibling. The right spine of a heap of n elements therefore has at most
+ * log(n + 1) nodes, and two heaps are melded by merging their right spines in O(log n). Inserting and popping are
+ * both done by melding.<br>
+ * Unlike the pooled heaps, the nodes are objects of their own, so that a meld only relinks the spines instead of
+ * copying one heap into the other.
+ * @param <T> the type of the elements
+ */
+public class LeftistHeap<T> implements PriorityQueue<T>, Meldable<LeftistHeap<T>> {
+
+    private static final class Node<T> {
+        private final T element;
+        private Node<T> left;
+        private Node<T> right;
+        private int rank = 1;
+
+        Node(T element) {
+            this.element = element;
+        }
+    }
+
+    private final Comparator<? super T> comparator;
+    private Node<T> root = null;
+    private int size = 0;
+
+    public LeftistHeap(final Comparator<? super T> c) {
+        comparator = c;
+    }
+
+    public static <S extends Comparable<? super S>> LeftistHeap<S> naturallyOrdered() {
+        return new LeftistHeap<>(S::compareTo);
+    }
+
+    private static int rank(final Node<?> node) {
+        return node == null ? 0 : node.rank;
+    }
+
+    // merges two heaps along their right spines and returns the root of the result
+    private Node<T> merge(Node<T> a, final Node<T> b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        if (comparator.compare(b.element, a.element) < 0)
+            return merge(b, a);
+        a.right = merge(a.right, b);
+        // restore the leftist property
+        if (rank(a.left) < rank(a.right)) {
+            Node<T> temp = a.left;
+            a.left = a.right;
+            a.right = temp;
+        }
+        a.rank = rank(a.right) + 1;
+        return a;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void insert(final T element) {
+        root = merge(root, new Node<>(element));
+        size++;
+    }
+
+    /**
+     * Inserts all elements at once in O(k) for k elements: the single elements are melded in pairs, then the results
+     * in pairs and so on, instead of melding each of them with the whole heap.
+     * @param elements the elements to be inserted
+     */
+    public void insertAll(final Iterable<? extends T> elements) {
+        ArrayDeque<Node<T>> heaps = new ArrayDeque<>();
+        for (T element : elements)
+            heaps.add(new Node<>(element));
+        size += heaps.size();
+        root = merge(root, meldAll(heaps));
+    }
+
+    /**
+     * Removes the deleted elements from the top of the heap, so that the minimum afterwards is not deleted. Starting
+     * at the root, every deleted node is removed and its children are searched as well. The subtrees below that are
+     * rooted at elements which are kept are then melded in pairs, which takes O(k log(n / k)) for k subtrees instead
+     * of O(log n) for each pop. Deleted elements below kept ones stay in the heap.
+     * @param deleted tells which elements have been deleted
+     * @return the number of removed elements
+     */
+    public int purge(final Predicate<? super T> deleted) {
+        if (root == null || !deleted.test(root.element))
+            return 0;
+        ArrayDeque<Node<T>> kept = new ArrayDeque<>();
+        ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(root);
+        int removed = 0;
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            if (!deleted.test(node.element)) {
+                kept.add(node);
+                continue;
+            }
+            removed++;
+            if (node.left != null)
+                stack.push(node.left);
+            if (node.right != null)
+                stack.push(node.right);
+        }
+        root = meldAll(kept);
+        size -= removed;
+        return removed;
+    }
+
+    // melds the heaps in pairs until one is left, in O(k log(n / k)) for k heaps of n elements altogether
+    private Node<T> meldAll(final ArrayDeque<Node<T>> heaps) {
+        if (heaps.isEmpty())
+            return null;
+        while (heaps.size() > 1)
+            heaps.add(merge(heaps.poll(), heaps.poll()));
+        return heaps.poll();
+    }
+
+    @Override
+    public T peek() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        return root.element;
+    }
+
+    @Override
+    public T pop() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        T element = root.element;
+        root = merge(root.left, root.right);
+        size--;
+        return element;
+    }
+
+    /**
+     * Destructively melds other into this in O(log n). Other is empty afterwards.
+     * @param other the heap to meld into this
+     */
+    @Override
+    public void meld(final LeftistHeap<T> other) {
+        if (other == this)
+            return;
+        root = merge(root, other.root);
+        size += other.size;
+        other.clear();
+    }
+
+    /**
+     * Removes all elements.
+     */
+    public void clear() {
+        root = null;
+        size = 0;
+    }
+}
@@ -0,0 +1,134 @@
+package util.queue;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A relaxed concurrent priority queue after Rihani, Sanders and Dementiev.<br>
+ * The elements are spread over a number of sequential heaps, the lanes, each guarded by its own lock. An insertion
+ * goes to a random lane, a pop looks at the minima of two random lanes and takes the smaller one. Threads never wait
+ * for a lock but retry with other lanes, so with a few lanes per thread there is hardly any contention. In exchange
+ * a pop only returns an element close to the minimum: with c lanes per thread the rank of the popped element is
+ * O(c * threads) in expectation.
+ * @param <T> the type of the elements
+ */
+public final class MultiQueue<T> {
+
+    private static final class Lane<T> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final PriorityQueue<T> heap;
+        // the minimum and size of the heap, published for the threads that don't hold the lock
+        private volatile T top;
+        private volatile int size;
+
+        Lane(PriorityQueue<T> heap) {
+            this.heap = heap;
+        }
+    }
+
+    private final Comparator<? super T> comparator;
+    private final Lane<T>[] lanes;
+
+    /**
+     * Creates an empty queue whose lanes are {@link BinaryHeap}s.
+     * @param lanes the number of lanes, a small multiple of the number of threads
+     * @param c the comparator of the elements
+     */
+    public MultiQueue(final int lanes, final Comparator<? super T> c) {
+        this(lanes, c, BinaryHeap::new);
+    }
+
+    /**
+     * Creates an empty queue.
+     * @param lanes the number of lanes, a small multiple of the number of threads
+     * @param c the comparator of the elements
+     * @param factory creates the heap of a lane for a given comparator, e.g. {@code PairingHeap::new}
+     */
+    @SuppressWarnings("unchecked")
+    public MultiQueue(final int lanes, final Comparator<? super T> c,
+                      final Function<Comparator<? super T>, ? extends PriorityQueue<T>> factory) {
+        if (lanes <= 0)
+            throw new IllegalArgumentException("The number of lanes must be positive.");
+        comparator = c;
+        this.lanes = (Lane<T>[]) new Lane<?>[lanes];
+        for (int i = 0; i < lanes; i++)
+            this.lanes[i] = new Lane<>(factory.apply(c));
+    }
+
+    /**
+     * Inserts an element into a random lane.
+     * @param element the element to be inserted
+     */
+    public void insert(final T element) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            Lane<T> lane = lanes[random.nextInt(lanes.length)];
+            if (!lane.lock.tryLock())
+                continue;
+            try {
+                lane.heap.insert(element);
+                lane.top = lane.heap.peek();
+                lane.size = lane.heap.size();
+                return;
+            } finally {
+                lane.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes the smaller of the minima of two random lanes.
+     * @return an element close to the minimum, or null if all lanes were found empty
+     */
+    public T poll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            Lane<T> a = lanes[random.nextInt(lanes.length)];
+            Lane<T> b = lanes[random.nextInt(lanes.length)];
+            T topA = a.top, topB = b.top;
+            if (topA == null && topB == null) {
+                if (empty())
+                    return null;
+                continue;
+            }
+            Lane<T> lane = topB == null || topA != null && comparator.compare(topA, topB) <= 0 ? a : b;
+            if (!lane.lock.tryLock())
+                continue;
+            try {
+                // the lane may have been emptied since its minimum was read
+                if (lane.heap.empty())
+                    continue;
+                T element = lane.heap.pop();
+                lane.top = lane.heap.empty() ? null : lane.heap.peek();
+                lane.size = lane.heap.size();
+                return element;
+            } finally {
+                lane.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements. The lanes are not locked, so concurrent operations may or may not be counted.
+     * @return the size of the queue
+     */
+    public int size() {
+        int size = 0;
+        for (Lane<T> lane : lanes)
+            size += lane.size;
+        return size;
+    }
+
+    /**
+     * Returns whether all lanes are empty. The lanes are not locked, so concurrent operations may or may not be seen.
+     * @return true iff the queue is empty
+     */
+    public boolean empty() {
+        for (Lane<T> lane : lanes)
+            if (lane.top != null)
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,259 @@
+package util.queue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * A pairing heap with two-pass pops.<br>
+ * The nodes are pooled in parallel arrays: each node has a child, a sibling and a link to the node before it, which is
+ * its left sibling or, for a leftmost child, its parent. The id of an element is the index of its node. Popped nodes
+ * are reused by later insertions, so an id is only valid until its element has been popped.
+ * @param <T> the type of the elements
+ */
+public class PairingHeap<T> implements ExtendedPriorityQueue<T>, Meldable<PairingHeap<T>> {
+
+    private static final int NONE = -1;
+
+    private final Comparator<? super T> comparator;
+
+    private Object[] elements;
+    private int[] child;
+    private int[] sibling;
+    private int[] prev;
+
+    // the number of nodes ever allocated, the free ones are linked by their sibling
+    private int allocated = 0;
+    private int free = NONE;
+
+    private int root = NONE;
+    private int size = 0;
+
+    public PairingHeap(final Comparator<? super T> c) {
+        comparator = c;
+        elements = new Object[16];
+        child = new int[16];
+        sibling = new int[16];
+        prev = new int[16];
+    }
+
+    public static <S extends Comparable<? super S>> PairingHeap<S> naturallyOrdered() {
+        return new PairingHeap<>(S::compareTo);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T element(final int node) {
+        return (T) elements[node];
+    }
+
+    private boolean less(final int a, final int b) {
+        return comparator.compare(element(a), element(b)) < 0;
+    }
+
+    private int allocate(final T element) {
+        int node;
+        if (free != NONE) {
+            node = free;
+            free = sibling[node];
+        } else {
+            if (allocated == elements.length)
+                grow(2 * allocated);
+            node = allocated++;
+        }
+        elements[node] = element;
+        child[node] = NONE;
+        sibling[node] = NONE;
+        prev[node] = NONE;
+        return node;
+    }
+
+    private void release(final int node) {
+        elements[node] = null;
+        sibling[node] = free;
+        free = node;
+    }
+
+    private void grow(final int length) {
+        elements = Arrays.copyOf(elements, length);
+        child = Arrays.copyOf(child, length);
+        sibling = Arrays.copyOf(sibling, length);
+        prev = Arrays.copyOf(prev, length);
+    }
+
+    // links two detached trees and returns the root of the result
+    private int link(int a, int b) {
+        if (less(b, a)) {
+            int temp = a;
+            a = b;
+            b = temp;
+        }
+        // b becomes the leftmost child of a
+        sibling[b] = child[a];
+        if (child[a] != NONE)
+            prev[child[a]] = b;
+        prev[b] = a;
+        child[a] = b;
+        sibling[a] = NONE;
+        prev[a] = NONE;
+        return a;
+    }
+
+    // merges the trees in the sibling list starting at first in two passes and returns the root of the result
+    private int combine(final int first) {
+        // first pass: link pairs from left to right, collecting the results in reverse order
+        int paired = NONE;
+        int rest = first;
+        while (rest != NONE) {
+            int a = rest;
+            int b = sibling[a];
+            int merged;
+            if (b == NONE) {
+                rest = NONE;
+                merged = a;
+            } else {
+                rest = sibling[b];
+                merged = link(a, b);
+            }
+            sibling[merged] = paired;
+            paired = merged;
+        }
+        // second pass: link the results from right to left
+        int result = paired;
+        int current = sibling[result];
+        sibling[result] = NONE;
+        prev[result] = NONE;
+        while (current != NONE) {
+            int next = sibling[current];
+            result = link(result, current);
+            current = next;
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void insert(final T element) {
+        insertWithId(element);
+    }
+
+    @Override
+    public long insertWithId(final T element) {
+        int node = allocate(element);
+        root = root == NONE ? node : link(root, node);
+        size++;
+        return node;
+    }
+
+    /**
+     * Takes fresh nodes from the end of the pool, so that the ids are consecutive, and links each of them with the
+     * root in constant time.
+     */
+    @Override
+    public long insertAll(final Collection<? extends T> elements) {
+        if (allocated + elements.size() > this.elements.length)
+            grow(Math.max(2 * this.elements.length, allocated + elements.size()));
+        int first = allocated;
+        // hide the free list, so that allocate takes the nodes in order
+        int reusable = free;
+        free = NONE;
+        for (T element : elements) {
+            int node = allocate(element);
+            root = root == NONE ? node : link(root, node);
+        }
+        free = reusable;
+        size += elements.size();
+        return first;
+    }
+
+    @Override
+    public T peek() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        return element(root);
+    }
+
+    @Override
+    public T pop() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        int min = root;
+        T element = element(min);
+        root = child[min] == NONE ? NONE : combine(child[min]);
+        release(min);
+        size--;
+        return element;
+    }
+
+    @Override
+    public void decrease(final long id) {
+        if (id < 0 || id >= allocated || elements[(int) id] == null)
+            throw new NoSuchElementException("Invalid identifier.");
+        int node = (int) id;
+        if (node == root)
+            return;
+        // cut the subtree of node out of the sibling list it is part of
+        int before = prev[node];
+        if (child[before] == node)
+            child[before] = sibling[node];
+        else
+            sibling[before] = sibling[node];
+        if (sibling[node] != NONE)
+            prev[sibling[node]] = before;
+        sibling[node] = NONE;
+        prev[node] = NONE;
+        root = link(root, node);
+    }
+
+    /**
+     * Destructively melds other into this. The nodes of other are copied into the pool of this heap, so the ids
+     * of its elements are no longer valid afterwards.
+     * @param other the heap to meld into this
+     */
+    @Override
+    public void meld(final PairingHeap<T> other) {
+        if (other.size == 0)
+            return;
+        int offset = allocated;
+        if (allocated + other.allocated > elements.length)
+            grow(Math.max(2 * elements.length, allocated + other.allocated));
+        System.arraycopy(other.elements, 0, elements, offset, other.allocated);
+        for (int node = 0; node < other.allocated; node++) {
+            child[offset + node] = shift(other.child[node], offset);
+            sibling[offset + node] = shift(other.sibling[node], offset);
+            prev[offset + node] = shift(other.prev[node], offset);
+        }
+        allocated += other.allocated;
+        // the free nodes of other are still linked by their siblings, append this pool's free list to them
+        if (other.free != NONE) {
+            int last = offset + other.free;
+            while (sibling[last] != NONE)
+                last = sibling[last];
+            sibling[last] = free;
+            free = offset + other.free;
+        }
+        int otherRoot = offset + other.root;
+        root = root == NONE ? otherRoot : link(root, otherRoot);
+        size += other.size;
+        other.clear();
+    }
+
+    private static int shift(final int node, final int offset) {
+        return node == NONE ? NONE : node + offset;
+    }
+
+    /**
+     * Removes all elements and releases the pooled nodes.
+     */
+    public void clear() {
+        Arrays.fill(elements, 0, allocated, null);
+        allocated = 0;
+        free = NONE;
+        root = NONE;
+        size = 0;
+    }
+}
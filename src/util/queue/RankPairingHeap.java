@@ -0,0 +1,324 @@
+package util.queue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/**
+ * A type-1 rank-pairing heap (Haeupler, Sen and Tarjan) with one-pass linking.<br>
+ * The heap is a list of half-ordered half trees: every node is smaller than the nodes in its left subtree and the
+ * roots have no right subtree, so the right link of a root is free to form the circular list of roots. Decreasing a
+ * key cuts the node out together with its left subtree and repairs the ranks of its former ancestors, pops link roots
+ * of equal rank once each.<br>
+ * The nodes are pooled in parallel arrays like in {@link PairingHeap}, the id of an element is the index of its node
+ * and only valid until its element has been popped.
+ * @param <T> the type of the elements
+ */
+public class RankPairingHeap<T> implements ExtendedPriorityQueue<T>, Meldable<RankPairingHeap<T>> {
+
+    private static final int NONE = -1;
+
+    private final Comparator<? super T> comparator;
+
+    private Object[] elements;
+    private int[] left;
+    private int[] right;
+    private int[] parent;
+    private int[] rank;
+
+    // the number of nodes ever allocated, the free ones are linked by their parent
+    private int allocated = 0;
+    private int free = NONE;
+
+    // bucket[r] is the root of rank r found so far while popping, kept between pops
+    private int[] bucket = new int[0];
+
+    private int min = NONE;
+    private int size = 0;
+
+    public RankPairingHeap(final Comparator<? super T> c) {
+        comparator = c;
+        elements = new Object[16];
+        left = new int[16];
+        right = new int[16];
+        parent = new int[16];
+        rank = new int[16];
+    }
+
+    public static <S extends Comparable<? super S>> RankPairingHeap<S> naturallyOrdered() {
+        return new RankPairingHeap<>(S::compareTo);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T element(final int node) {
+        return (T) elements[node];
+    }
+
+    private boolean less(final int a, final int b) {
+        return comparator.compare(element(a), element(b)) < 0;
+    }
+
+    private int rankOf(final int node) {
+        return node == NONE ? -1 : rank[node];
+    }
+
+    private int allocate(final T element) {
+        int node;
+        if (free != NONE) {
+            node = free;
+            free = parent[node];
+        } else {
+            if (allocated == elements.length)
+                grow(2 * allocated);
+            node = allocated++;
+        }
+        elements[node] = element;
+        left[node] = NONE;
+        right[node] = NONE;
+        parent[node] = NONE;
+        rank[node] = 0;
+        return node;
+    }
+
+    private void release(final int node) {
+        elements[node] = null;
+        parent[node] = free;
+        free = node;
+    }
+
+    private void grow(final int length) {
+        elements = Arrays.copyOf(elements, length);
+        left = Arrays.copyOf(left, length);
+        right = Arrays.copyOf(right, length);
+        parent = Arrays.copyOf(parent, length);
+        rank = Arrays.copyOf(rank, length);
+    }
+
+    // adds a detached half tree to the root list
+    private void insertRoot(final int node) {
+        parent[node] = NONE;
+        if (min == NONE) {
+            right[node] = node;
+            min = node;
+        } else {
+            right[node] = right[min];
+            right[min] = node;
+            if (less(node, min))
+                min = node;
+        }
+    }
+
+    // links two detached half trees of equal rank and returns the root of the result
+    private int link(int a, int b) {
+        if (less(b, a)) {
+            int temp = a;
+            a = b;
+            b = temp;
+        }
+        // b becomes the left child of a, the old left subtree of a becomes the right subtree of b
+        right[b] = left[a];
+        if (left[a] != NONE)
+            parent[left[a]] = b;
+        left[a] = b;
+        parent[b] = a;
+        rank[a] = rank[b] + 1;
+        return a;
+    }
+
+    // files a detached half tree into the rank buckets, linking it with the tree of equal rank if there is one
+    private void file(final int node) {
+        int r = rank[node];
+        if (r >= bucket.length) {
+            int length = bucket.length;
+            bucket = Arrays.copyOf(bucket, Math.max(2 * length, r + 1));
+            Arrays.fill(bucket, length, bucket.length, NONE);
+        }
+        if (bucket[r] == NONE) {
+            bucket[r] = node;
+        } else {
+            int other = bucket[r];
+            bucket[r] = NONE;
+            insertRoot(link(other, node));
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void insert(final T element) {
+        insertWithId(element);
+    }
+
+    @Override
+    public long insertWithId(final T element) {
+        int node = allocate(element);
+        insertRoot(node);
+        size++;
+        return node;
+    }
+
+    /**
+     * Takes fresh nodes from the end of the pool, so that the ids are consecutive, and adds each of them to the root
+     * list in constant time.
+     */
+    @Override
+    public long insertAll(final Collection<? extends T> elements) {
+        if (allocated + elements.size() > this.elements.length)
+            grow(Math.max(2 * this.elements.length, allocated + elements.size()));
+        int first = allocated;
+        // hide the free list, so that allocate takes the nodes in order
+        int reusable = free;
+        free = NONE;
+        for (T element : elements)
+            insertRoot(allocate(element));
+        free = reusable;
+        size += elements.size();
+        return first;
+    }
+
+    @Override
+    public T peek() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        return element(min);
+    }
+
+    @Override
+    public T pop() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        int x = min;
+        T element = element(x);
+
+        // detach the remaining roots and the right spine of the left subtree of x, then link them in one pass
+        int first = right[x];
+        int spine = left[x];
+        min = NONE;
+        for (int root = first; root != x;) {
+            int next = right[root];
+            file(root);
+            root = next;
+        }
+        while (spine != NONE) {
+            int next = right[spine];
+            right[spine] = NONE;
+            parent[spine] = NONE;
+            rank[spine] = rankOf(left[spine]) + 1;
+            file(spine);
+            spine = next;
+        }
+        for (int r = 0; r < bucket.length; r++) {
+            if (bucket[r] != NONE) {
+                insertRoot(bucket[r]);
+                bucket[r] = NONE;
+            }
+        }
+
+        release(x);
+        size--;
+        return element;
+    }
+
+    @Override
+    public void decrease(final long id) {
+        if (id < 0 || id >= allocated || elements[(int) id] == null)
+            throw new NoSuchElementException("Invalid identifier.");
+        int x = (int) id;
+        int u = parent[x];
+        if (u == NONE) {
+            // x is a root, its half tree stays valid
+            if (less(x, min))
+                min = x;
+            return;
+        }
+
+        // replace x by its right subtree and make x with its left subtree a new root
+        int y = right[x];
+        if (left[u] == x)
+            left[u] = y;
+        else
+            right[u] = y;
+        if (y != NONE)
+            parent[y] = u;
+        rank[x] = rankOf(left[x]) + 1;
+        insertRoot(x);
+
+        // restore the type-1 rank rule on the path to the root, ranks only ever decrease
+        while (u != NONE) {
+            int r;
+            if (parent[u] == NONE) {
+                r = rankOf(left[u]) + 1;
+            } else {
+                int a = rankOf(left[u]);
+                int b = rankOf(right[u]);
+                r = a != b ? Math.max(a, b) : a + 1;
+            }
+            if (r >= rank[u])
+                break;
+            rank[u] = r;
+            u = parent[u];
+        }
+    }
+
+    /**
+     * Destructively melds other into this. The nodes of other are copied into the pool of this heap, so the ids
+     * of its elements are no longer valid afterwards.
+     * @param other the heap to meld into this
+     */
+    @Override
+    public void meld(final RankPairingHeap<T> other) {
+        if (other.size == 0)
+            return;
+        int offset = allocated;
+        if (allocated + other.allocated > elements.length)
+            grow(Math.max(2 * elements.length, allocated + other.allocated));
+        System.arraycopy(other.elements, 0, elements, offset, other.allocated);
+        System.arraycopy(other.rank, 0, rank, offset, other.allocated);
+        for (int node = 0; node < other.allocated; node++) {
+            left[offset + node] = shift(other.left[node], offset);
+            right[offset + node] = shift(other.right[node], offset);
+            parent[offset + node] = shift(other.parent[node], offset);
+        }
+        allocated += other.allocated;
+        // the free nodes of other are still linked by their parents, append this pool's free list to them
+        if (other.free != NONE) {
+            int last = offset + other.free;
+            while (parent[last] != NONE)
+                last = parent[last];
+            parent[last] = free;
+            free = offset + other.free;
+        }
+        // splice the two circular root lists
+        int otherMin = offset + other.min;
+        if (min == NONE) {
+            min = otherMin;
+        } else {
+            int next = right[min];
+            right[min] = right[otherMin];
+            right[otherMin] = next;
+            if (less(otherMin, min))
+                min = otherMin;
+        }
+        size += other.size;
+        other.clear();
+    }
+
+    private static int shift(final int node, final int offset) {
+        return node == NONE ? NONE : node + offset;
+    }
+
+    /**
+     * Removes all elements and releases the pooled nodes.
+     */
+    public void clear() {
+        Arrays.fill(elements, 0, allocated, null);
+        allocated = 0;
+        free = NONE;
+        min = NONE;
+        size = 0;
+    }
+}
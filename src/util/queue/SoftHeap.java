@@ -3,7 +3,7 @@ package util.queue;
 import java.util.*;
 
 /**
- * 
+ *
  * The soft heap, first described by Chazelle, is an approximate data structure similar to a priority queue.
  * It achieves a constant runtime on all operations but insert. The runtime of insert is in O(log(1/e)), where
  * e is the error rate of the soft heap. <br>
@@ -11,19 +11,44 @@ import java.util.*;
  * Thus, the depth of the binary heaps that build the core of this data structure is drastically reduced. This grouping
  * of elements leads to a loss of precision.<br>
  * This class doesn't contain an implementation of the soft heap as Chazelle devised it, but an easier version
- * described by Kaplan and Zwick
+ * described by Kaplan and Zwick<br>
+ * The binary heaps, their nodes and the items in the element lists of the nodes are pooled in parallel arrays and
+ * refer to each other by index. The element list of a node is linked through the items, so moving the elements of
+ * a child into its parent takes constant time, and every item carries a flag that tells whether it is corrupted.
+ * Inserting an element, popping it and clearing the heap don't allocate anything once the pools are large enough.
  * @see SoftPriorityQueue
  * @param <T> the type of element to be stored in the soft heap
  */
 public class SoftHeap<T> implements SoftPriorityQueue<T>, Meldable<SoftHeap<T>> {
 
-    private final double errorRate;
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
     private final int nodeMinRank;
-    private BinaryHeap queue;
-    private Set<T> corruptedElements;
     private final Comparator<? super T> comparator;
     private int size;
     private int rank;
+    // the first binary heap of the queue of binary heaps, which is ordered by increasing rank
+    private int queue = NONE;
+
+    // the binary heaps, free ones are linked by heapNext
+    private int[] heapRoot, heapNext, heapPrev, sufMin;
+    private int heaps = 0, freeHeap = NONE;
+
+    // the nodes of the binary heaps, free ones are linked by leftChild
+    private int[] leftChild, rightChild, nodeRank, nodeSize, first, last, count;
+    private Object[] key;
+    private int nodes = 0, freeNode = NONE;
+
+    // the items of the element lists of the nodes, free ones are linked by itemNext
+    private Object[] item;
+    private int[] itemNext;
+    private boolean[] corrupt;
+    private int items = 0, freeItem = NONE;
+
+    // what the soft heap has done since it has been created or its statistics have been reset
+    private long inserts = 0, sifts = 0, corruptions = 0, carPooled = 0;
+    private int largestCarPool = 0;
 
     /**
      * Constructs a new soft heap with the given error rate containing the specified element.
@@ -34,12 +59,7 @@ public class SoftHeap<T> implements SoftPriorityQueue<T>, Meldable<SoftHeap<T>>
      */
     public SoftHeap(double errorRate, Comparator<? super T> comparator, T element) {
         this(errorRate, comparator);
-        queue = new BinaryHeap();
-        queue.root.insert(element);
-        queue.sufMin = queue;
-        size = 1;
-        rank = 1;
-        corruptedElements = new HashSet<>();
+        insert(element);
     }
 
     /**
@@ -49,11 +69,12 @@ public class SoftHeap<T> implements SoftPriorityQueue<T>, Meldable<SoftHeap<T>>
      * Comparable, you might also use {@link #naturallyOrdered}
      */
     public SoftHeap(double errorRate, Comparator<? super T> comparator) {
-        this.errorRate = errorRate;
         // Cause Java doesn't support computing the logarithm to an arbitrary base...
         nodeMinRank = (int)Math.ceil(Math.log(1 / errorRate) / Math.log(2)) + 5;
         this.comparator = comparator;
-
+        growHeaps(INITIAL_CAPACITY);
+        growNodes(INITIAL_CAPACITY);
+        growItems(INITIAL_CAPACITY);
     }
 
     /**
@@ -72,312 +93,545 @@ public class SoftHeap<T> implements SoftPriorityQueue<T>, Meldable<SoftHeap<T>>
         return size;
     }
 
+    /**
+     * Collects the corrupted elements. This walks over all elements, use {@link #peekCorrupted} to check the
+     * element at the top of the heap.
+     * @return the corrupted elements
+     */
     @Override
     public Collection<T> corrupted() {
-        return corruptedElements;
+        List<T> corrupted = new ArrayList<>();
+        Deque<Integer> pending = new ArrayDeque<>();
+        for (int heap = queue; heap != NONE; heap = heapNext[heap])
+            pending.push(heapRoot[heap]);
+        while (!pending.isEmpty()) {
+            int node = pending.pop();
+            for (int i = first[node]; i != NONE; i = itemNext[i])
+                if (corrupt[i])
+                    corrupted.add(itemAt(i));
+            if (leftChild[node] != NONE)
+                pending.push(leftChild[node]);
+            if (rightChild[node] != NONE)
+                pending.push(rightChild[node]);
+        }
+        return corrupted;
     }
 
     @Override
     public T peek() {
-        List<? extends T> elements = queue.sufMin.root.elements;
-        return elements.get(0);
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        return itemAt(first[heapRoot[sufMin[queue]]]);
+    }
+
+    /**
+     * Returns whether the element that {@link #peek} returns is corrupted. The soft heap forgets about the corruption
+     * of an element once it is popped, so this has to be asked before.
+     * @return true iff the element at the top of the heap is corrupted
+     */
+    public boolean peekCorrupted() {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        return corrupt[first[heapRoot[sufMin[queue]]]];
     }
 
     @Override
     public T pop() {
-        BinaryHeap minHeap = queue.sufMin;
-        List<T> elements = minHeap.root.elements;
-        T element = elements.get(0);
-        elements.remove(0);
-        if (minHeap.root.size * 0.5 > elements.size()) {
-        	// Replenish the list.
-        	// Remove the tree if its now empty
-        	if (minHeap.root.sift() == 0) {
+        if (size == 0)
+            throw new NoSuchElementException("Heap is empty.");
+        int minHeap = sufMin[queue];
+        int root = heapRoot[minHeap];
+        int head = first[root];
+        T element = itemAt(head);
+        first[root] = itemNext[head];
+        if (first[root] == NONE)
+            last[root] = NONE;
+        count[root]--;
+        releaseItem(head);
+        if (nodeSize[root] * 0.5 > count[root]) {
+            // Replenish the list.
+            // Remove the tree if its now empty
+            if (sift(root) == 0) {
+                releaseNode(root);
                 removeHeap(minHeap);
-        	} else {
-        		minHeap.updateSuffixMin();
-        	}
+            } else {
+                updateSuffixMin(minHeap);
+            }
         }
-        corruptedElements.remove(element);
         size--;
         return element;
     }
 
     @Override
     public void insert(T element) {
-        SoftHeap<T> newHeap = new SoftHeap<T>(errorRate, comparator, element);
-        meld(newHeap);
+        inserts++;
+        int node = newNode(NONE, NONE, 1);
+        appendItem(node, element);
+        key[node] = element;
+        int heap = newHeap(node);
+        meldQueue(heap, 1);
+        size++;
     }
 
     /**
-     * Combines two binary heaps
-     * @param first the first heap
-     * @param second the second heap
-     * @return the combined heap
+     * Returns the number of elements inserted.
+     * @return the number of inserts
      */
-    private BinaryHeap combine(BinaryHeap first, BinaryHeap second) {
-    	// Update first so its root node contains first and second as childs.
-    	// We keep the references for now
-        first.combine(second);
-        return first;
+    public long inserts() {
+        return inserts;
     }
+
     /**
-     * Removes a heap from the queue. Updates all pointers properly
-     * @param heap the heap to be removed
+     * Returns how often the elements of a child have been moved into its parent to replenish the parent's list.
+     * @return the number of sifts
      */
-    private void removeHeap(BinaryHeap heap) {
-    	if (heap.next != null) {
-    		heap.next.prev = heap.prev;
-    	}
-    	// the heap we are removing was the start of the queue
-    	if (heap.prev == null){
-    		queue = heap.next;
-    	} else {
-    		heap.prev.next = heap.next;
-    		heap.prev.updateSuffixMin();
-    	}
+    public long sifts() {
+        return sifts;
     }
+
     /**
-     * Resets the binary heap
+     * Returns how often an element has become corrupted. An element is counted only once, no matter how often its key
+     * is raised afterwards.
+     * @return the number of corruptions
      */
-    public void clear() {
-    	this.queue = null;
-    	this.size = 0;
-    	this.rank = 0;
-    	this.corruptedElements.clear();
+    public long corruptions() {
+        return corruptions;
     }
+
     /**
-     * Merges two queues of Binary heaps and keeps the heaps in increasing order by rank
-     * @param queue1 the first queue 
-     * @param queue2 the second queue
-     * @return the first heap in the queue of merged binary heaps
+     * Returns how many elements a sift has appended to a list that still held corrupted elements, so that they now
+     * share the key of the list with these.
+     * @return the number of car-pooled elements
      */
-    private BinaryHeap mergeQueues(BinaryHeap queue1, BinaryHeap queue2) {
-    	BinaryHeap root;
-    	// Find the Heap with smallest rank and put it at the very beginning of the merged queue
-    	if (queue1.root.rank < queue2.root.rank) {
-    		root = queue1;
-    		queue1 = queue1.next;
-    	} else {
-    		root = queue2;
-    		queue2 = queue2.next;
-    	}
-    	BinaryHeap currentHeap = root;
-    	// While there are elements in both queues, take the smaller one and append it to our queue
-    	while (queue1 != null && queue2 != null) {
-    		BinaryHeap smallerHeap;
-    		if (queue1.root.rank < queue2.root.rank) {
-    			smallerHeap = queue1;
-    			queue1 = queue1.next;
-    		} else {
-    			smallerHeap = queue2;
-    			queue2 = queue2.next;
-    		}
-    		currentHeap.next = smallerHeap;
-    		smallerHeap.prev = currentHeap;
-    		currentHeap = currentHeap.next;
-    	}
-    	BinaryHeap remainingQueue;
-    	// Either queue1 or queue2 still contains elements, and because the heaps are ordered in increasing order by rank
-    	// we can just append the remaining heaps
-    	if (queue1 != null) {
-    		remainingQueue = queue1;
-    	} else {
-    		remainingQueue = queue2;
-    	}
-    	currentHeap.next = remainingQueue;
-    	remainingQueue.prev = currentHeap;
-    	
-    	return root;
-    }
-    
+    public long carPooled() {
+        return carPooled;
+    }
+
     /**
-     * Combines all heaps of the same rank so that there is only one heap for a given rank
-     * @param queue the queue in which to combine all trees
-     * @param combineUpTo the rank up to which duplicates of a rank can appear
-     * @return the last which suffix min pointer needs to be updated
+     * Returns the size of the largest list that a sift has formed by appending elements to corrupted ones, the size
+     * of the largest car pool. It is 0 as long as no elements have been car-pooled.
+     * @return the size of the largest car pool
      */
-    private BinaryHeap repeatedCombine(BinaryHeap queue, int combineUpTo) {
-    	BinaryHeap currentHeap = queue;
-    	while (currentHeap.next != null) {
-    		// Combine two trees if they are of the same rank
-    		if (currentHeap.root.rank == currentHeap.next.root.rank) {
-    			// But only if there is not a third of the same rank following these two
-    			if (currentHeap.next.next == null ||
-    					currentHeap.root.rank != currentHeap.next.next.root.rank) {
-    				currentHeap = combine(currentHeap, currentHeap.next);
-    				rank = Math.max(rank, currentHeap.root.rank);
-    				removeHeap(currentHeap.next);
-    				continue;
-    			}
-    		} else if(currentHeap.root.rank > combineUpTo) {
-    			break;
-    		}
-    		currentHeap = currentHeap.next;
-    	}
-    	return currentHeap;
+    public int largestCarPool() {
+        return largestCarPool;
     }
 
-    @Override
-    public void meld(SoftHeap<T> other) {
-    	if (other.queue == null) {
-    		return;
-    	}
-    	// In case this soft heap is empty we just copy the other heap
-    	if (this.queue == null) {
-    		this.queue = other.queue;
-    		this.rank = other.rank;
-    		this.corruptedElements = other.corruptedElements;
-    		this.size = other.size;
-    		other.clear();
-    		return;
-    	}
-    	int combineUpTo = Math.min(this.rank, other.rank);
-    	rank = Math.max(this.rank, other.rank);
-    	// Merge both queues in increasing order of rank
-    	queue = mergeQueues(this.queue, other.queue);
+    /**
+     * Resets all statistics to zero. Clearing the soft heap keeps them, so that they can sum up several uses.
+     */
+    public void resetStatistics() {
+        inserts = sifts = corruptions = carPooled = 0;
+        largestCarPool = 0;
+    }
 
-        // Next we combine heaps of the same rank k to a single heap of rank k + 1
-        BinaryHeap lastUpdatedHeap = repeatedCombine(queue, combineUpTo);
-        // Update the set of corrupted elements as well as size and the sufMin pointers
-        corruptedElements.addAll(other.corruptedElements);
-        size += other.size();
-        lastUpdatedHeap.updateSuffixMin();
-        // clear the other heap, because it has been destroyed in the merging process
-        other.clear();
+    /**
+     * Resets the soft heap, so that it can be reused without allocating a new one
+     */
+    public void clear() {
+        Arrays.fill(key, 0, nodes, null);
+        Arrays.fill(item, 0, items, null);
+        queue = NONE;
+        heaps = nodes = items = 0;
+        freeHeap = freeNode = freeItem = NONE;
+        size = 0;
+        rank = 0;
     }
-    
-    public String toString() {
-    	StringBuilder sb = new StringBuilder();
-    	sb.append("SoftHeap of rank ").append(rank).append(" with ").append(size).append(" elements\n");
-    	for (BinaryHeap heap = queue; heap != null; heap = heap.next) {
-    		sb.append(heap.prev).append(" - ").append(heap).append(" - ").append(heap.next).append("\n");
-    		sb.append("Suffix-Min points to ").append(heap.sufMin).append("\n");
-    	}
-    	return sb.toString();
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int i) {
+        return (T) item[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compareKeys(int node, int other) {
+        return comparator.compare((T) key[node], (T) key[other]);
+    }
+
+    private void growHeaps(int capacity) {
+        heapRoot = grow(heapRoot, capacity);
+        heapNext = grow(heapNext, capacity);
+        heapPrev = grow(heapPrev, capacity);
+        sufMin = grow(sufMin, capacity);
+    }
+
+    private void growNodes(int capacity) {
+        leftChild = grow(leftChild, capacity);
+        rightChild = grow(rightChild, capacity);
+        nodeRank = grow(nodeRank, capacity);
+        nodeSize = grow(nodeSize, capacity);
+        first = grow(first, capacity);
+        last = grow(last, capacity);
+        count = grow(count, capacity);
+        key = key == null ? new Object[capacity] : Arrays.copyOf(key, capacity);
+    }
+
+    private void growItems(int capacity) {
+        item = item == null ? new Object[capacity] : Arrays.copyOf(item, capacity);
+        itemNext = grow(itemNext, capacity);
+        corrupt = corrupt == null ? new boolean[capacity] : Arrays.copyOf(corrupt, capacity);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+    }
+
+    private int newHeap(int root) {
+        int heap;
+        if (freeHeap != NONE) {
+            heap = freeHeap;
+            freeHeap = heapNext[heap];
+        } else {
+            if (heaps == heapRoot.length)
+                growHeaps(2 * heaps);
+            heap = heaps++;
+        }
+        heapRoot[heap] = root;
+        heapNext[heap] = NONE;
+        heapPrev[heap] = NONE;
+        sufMin[heap] = heap;
+        return heap;
+    }
+
+    private void releaseHeap(int heap) {
+        heapNext[heap] = freeHeap;
+        freeHeap = heap;
     }
 
     /**
-     * 
-     * Represents a binary heap in the queue of binary heaps that the soft heap consists of
+     * Creates a node, which takes the elements of its children as long as it has too few of them.
+     * Leaves have no children and only a single element.
+     * @param left the left child
+     * @param right the right child
+     * @param rank the rank of the new node
+     * @return the new node
      */
-    protected class BinaryHeap {
-        BinaryHeapNode root;
-        BinaryHeap next, prev;
-        BinaryHeap sufMin;
-
-        public BinaryHeap() {
-            root = new BinaryHeapNode();
+    private int newNode(int left, int right, int rank) {
+        int node;
+        if (freeNode != NONE) {
+            node = freeNode;
+            freeNode = leftChild[node];
+        } else {
+            if (nodes == leftChild.length)
+                growNodes(2 * nodes);
+            node = nodes++;
         }
+        leftChild[node] = left;
+        rightChild[node] = right;
+        nodeRank[node] = rank;
+        if (rank < nodeMinRank) {
+            nodeSize[node] = 1;
+        } else {
+            nodeSize[node] = (int)Math.ceil(3 * Math.max(nodeSize[left], nodeSize[right]) * 0.5);
+        }
+        first[node] = NONE;
+        last[node] = NONE;
+        count[node] = 0;
+        key[node] = null;
+        if (left != NONE)
+            sift(node);
+        return node;
+    }
 
-        public void combine(BinaryHeap second) {
-            root = new BinaryHeapNode(root, second.root, null, second.root.rank + 1);
+    private void releaseNode(int node) {
+        key[node] = null;
+        leftChild[node] = freeNode;
+        freeNode = node;
+    }
+
+    private void appendItem(int node, T element) {
+        int i;
+        if (freeItem != NONE) {
+            i = freeItem;
+            freeItem = itemNext[i];
+        } else {
+            if (items == item.length)
+                growItems(2 * items);
+            i = items++;
         }
+        item[i] = element;
+        itemNext[i] = NONE;
+        corrupt[i] = false;
+        if (last[node] == NONE)
+            first[node] = i;
+        else
+            itemNext[last[node]] = i;
+        last[node] = i;
+        count[node]++;
+    }
 
-        /**
-         * Updates sufMin, which points to the tree following this tree
-         * with the smallest root node. 
-         */
-        public void updateSuffixMin() {
-            if (next != null && comparator.compare(root.key, next.sufMin.root.key) > 0) {
-                sufMin = next.sufMin;
-            } else {
-                sufMin = this;
+    private void releaseItem(int i) {
+        item[i] = null;
+        itemNext[i] = freeItem;
+        freeItem = i;
+    }
+
+    /**
+     * Replenishes the elements associated with the key of the given node
+     * if the amount of elements in the list
+     * has dropped below size / 2.
+     * @param node the node to replenish
+     * @return the number of elements now contained in the list
+     */
+    private int sift(int node) {
+        while (count[node] < nodeSize[node] * 0.5 && leftChild[node] != NONE) {
+            // At least the left child exists.
+            // Now we check whether the right child exists and
+            // swap both if the key of the rightChild is smaller
+            if (rightChild[node] != NONE && compareKeys(leftChild[node], rightChild[node]) > 0) {
+                int smallerChild = rightChild[node];
+                rightChild[node] = leftChild[node];
+                leftChild[node] = smallerChild;
             }
-            if (prev != null) {
-                prev.updateSuffixMin();
-            } 
+            int child = leftChild[node];
+            // The remaining elements now get a larger key
+            for (int i = first[node]; i != NONE; i = itemNext[i]) {
+                if (!corrupt[i]) {
+                    corrupt[i] = true;
+                    corruptions++;
+                }
+            }
+            sifts++;
+            // Append all elements from the child node
+            key[node] = key[child];
+            if (first[child] != NONE) {
+                if (last[node] == NONE) {
+                    first[node] = first[child];
+                } else {
+                    // the elements of the child join the corrupted ones that are left in the list
+                    itemNext[last[node]] = first[child];
+                    carPooled += count[child];
+                    largestCarPool = Math.max(largestCarPool, count[node] + count[child]);
+                }
+                last[node] = last[child];
+                count[node] += count[child];
+                first[child] = NONE;
+                last[child] = NONE;
+                count[child] = 0;
+            }
+
+            // Recurse and delete the child if it appears to be empty
+            if (sift(child) == 0) {
+                releaseNode(child);
+                leftChild[node] = rightChild[node];
+                rightChild[node] = NONE;
+            }
+        }
+        return count[node];
+    }
+
+    /**
+     * Removes a heap from the queue. Updates all pointers properly
+     * @param heap the heap to be removed
+     */
+    private void removeHeap(int heap) {
+        int next = heapNext[heap], prev = heapPrev[heap];
+        if (next != NONE) {
+            heapPrev[next] = prev;
         }
-        public String toString() {
-        	return "R " + root.rank + " | S " + root.size;
+        // the heap we are removing was the start of the queue
+        if (prev == NONE) {
+            queue = next;
+        } else {
+            heapNext[prev] = next;
+            updateSuffixMin(prev);
         }
+        releaseHeap(heap);
     }
 
-    protected class BinaryHeapNode {
-        BinaryHeapNode rightChild, leftChild;
-        List<T> elements;
-        T key;
-        final int rank;
-        final int size;
-        int index;
-
-        public BinaryHeapNode(BinaryHeapNode leftChild, BinaryHeapNode rightChild, T key, int rank) {
-            this.key = key;
-            this.rank = rank;
-            this.rightChild = rightChild;
-            this.leftChild = leftChild;
-            if (rank < nodeMinRank) {
-                size = 1;
+    /**
+     * Updates sufMin, which points to the tree following this tree
+     * with the smallest root node, for the given heap and all heaps before it.
+     * @param heap the last heap whose successors have changed
+     */
+    private void updateSuffixMin(int heap) {
+        for (; heap != NONE; heap = heapPrev[heap]) {
+            int next = heapNext[heap];
+            if (next != NONE && compareKeys(heapRoot[heap], heapRoot[sufMin[next]]) > 0) {
+                sufMin[heap] = sufMin[next];
             } else {
-                size = (int)Math.ceil(3 * Math.max(leftChild.size, rightChild.size) * 0.5);
+                sufMin[heap] = heap;
             }
-            elements = new LinkedList<>();
-            sift();
         }
+    }
 
-        public BinaryHeapNode() {
-            rank = 1;
-            size = 1;
-            elements = new LinkedList<>();
+    /**
+     * Merges two queues of Binary heaps and keeps the heaps in increasing order by rank
+     * @param queue1 the first queue
+     * @param queue2 the second queue
+     * @return the first heap in the queue of merged binary heaps
+     */
+    private int mergeQueues(int queue1, int queue2) {
+        int root;
+        // Find the Heap with smallest rank and put it at the very beginning of the merged queue
+        if (rankOf(queue1) < rankOf(queue2)) {
+            root = queue1;
+            queue1 = heapNext[queue1];
+        } else {
+            root = queue2;
+            queue2 = heapNext[queue2];
         }
-
-        /**
-         * Inserts the given element into the selected node.
-         * @param element the element to be inserted
-         * @throws IllegalArgumentException in case the key is too large
-         */
-        public void insert(T element) {
-            if (key == null) {
-                key = element;
-            } else if (comparator.compare(element, key) > 0) {
-                throw new IllegalArgumentException(String.format("element %s is too large for %s", element, key));
+        heapPrev[root] = NONE;
+        int currentHeap = root;
+        // While there are elements in both queues, take the smaller one and append it to our queue
+        while (queue1 != NONE && queue2 != NONE) {
+            int smallerHeap;
+            if (rankOf(queue1) < rankOf(queue2)) {
+                smallerHeap = queue1;
+                queue1 = heapNext[queue1];
+            } else {
+                smallerHeap = queue2;
+                queue2 = heapNext[queue2];
             }
-            elements.add(element);
+            heapNext[currentHeap] = smallerHeap;
+            heapPrev[smallerHeap] = currentHeap;
+            currentHeap = smallerHeap;
         }
+        // Either queue1 or queue2 still contains elements, and because the heaps are ordered in increasing order by rank
+        // we can just append the remaining heaps
+        int remainingQueue = queue1 != NONE ? queue1 : queue2;
+        heapNext[currentHeap] = remainingQueue;
+        if (remainingQueue != NONE)
+            heapPrev[remainingQueue] = currentHeap;
 
-        /**
-         * Returns whether a node is a leaf, which is the case
-         * if both of its children don't exist.
-         * @return whether the node is a leaf
-         */
-        public boolean isLeaf() {
-            return rightChild == null && leftChild == null;
-        }
+        return root;
+    }
 
+    private int rankOf(int heap) {
+        return nodeRank[heapRoot[heap]];
+    }
 
-        /**
-         * Replenishes the elements associated with the given key
-         * if the amount of elements in the list
-         * has dropped below size / 2.
-         * @return the number of elements now contained in the list
-         */
-        public int sift() {
-            while (elements.size() < size * 0.5 && !isLeaf()) {
-//            	System.out.println(elements + ", " + leftChild + " : " + rightChild);
-                // At least the left child exists.
-                // Now we check whether the right child exists and
-                // swap both if the key of the rightChild is smaller
-                if (rightChild != null) {
-                    if (comparator.compare(leftChild.key, rightChild.key) > 0) {
-                        BinaryHeapNode smallerChild = rightChild;
-                        rightChild = leftChild;
-                        leftChild = smallerChild;
-                    }
-                }
-                // Update the set keeping track of the corrupted elements
-                corruptedElements.addAll(elements);
-                // Append all elements from the child node
-                key = leftChild.key;
-                elements.addAll(leftChild.elements);
-                leftChild.elements.clear();
-                
-                // Recurse and delete the child if it appears to be empty
-                if (leftChild.sift() == 0) {
-                    leftChild = rightChild;
-                    rightChild = null;
+    /**
+     * Combines all heaps of the same rank so that there is only one heap for a given rank
+     * @param queue the queue in which to combine all trees
+     * @param combineUpTo the rank up to which duplicates of a rank can appear
+     * @return the last which suffix min pointer needs to be updated
+     */
+    private int repeatedCombine(int queue, int combineUpTo) {
+        int currentHeap = queue;
+        while (heapNext[currentHeap] != NONE) {
+            int next = heapNext[currentHeap];
+            // Combine two trees if they are of the same rank
+            if (rankOf(currentHeap) == rankOf(next)) {
+                int afterNext = heapNext[next];
+                // But only if there is not a third of the same rank following these two
+                if (afterNext == NONE || rankOf(currentHeap) != rankOf(afterNext)) {
+                    heapRoot[currentHeap] = newNode(heapRoot[currentHeap], heapRoot[next], rankOf(next) + 1);
+                    rank = Math.max(rank, rankOf(currentHeap));
+                    removeHeap(next);
+                    continue;
                 }
+            } else if (rankOf(currentHeap) > combineUpTo) {
+                break;
             }
-            return elements.size();
+            currentHeap = next;
+        }
+        return currentHeap;
+    }
+
+    // melds a queue of binary heaps that lives in the pools of this soft heap into the queue of this soft heap
+    private void meldQueue(int other, int otherRank) {
+        // In case this soft heap is empty we just take the other queue
+        if (queue == NONE) {
+            queue = other;
+            rank = otherRank;
+            return;
+        }
+        int combineUpTo = Math.min(rank, otherRank);
+        rank = Math.max(rank, otherRank);
+        // Merge both queues in increasing order of rank
+        queue = mergeQueues(queue, other);
+        // Next we combine heaps of the same rank k to a single heap of rank k + 1
+        int lastUpdatedHeap = repeatedCombine(queue, combineUpTo);
+        updateSuffixMin(lastUpdatedHeap);
+    }
+
+    /**
+     * Destructively melds other into this. The pools of other are copied into the pools of this soft heap, which takes
+     * time linear in the size of other.
+     * @param other the soft heap to meld into this
+     */
+    @Override
+    public void meld(SoftHeap<T> other) {
+        // the statistics of other are taken over as well
+        inserts += other.inserts;
+        sifts += other.sifts;
+        corruptions += other.corruptions;
+        carPooled += other.carPooled;
+        largestCarPool = Math.max(largestCarPool, other.largestCarPool);
+        other.resetStatistics();
+        if (other.queue == NONE) {
+            return;
+        }
+        int heapOffset = heaps, nodeOffset = nodes, itemOffset = items;
+        if (heaps + other.heaps > heapRoot.length)
+            growHeaps(Math.max(2 * heapRoot.length, heaps + other.heaps));
+        if (nodes + other.nodes > leftChild.length)
+            growNodes(Math.max(2 * leftChild.length, nodes + other.nodes));
+        if (items + other.items > item.length)
+            growItems(Math.max(2 * item.length, items + other.items));
+
+        for (int h = 0; h < other.heaps; h++) {
+            heapRoot[heapOffset + h] = shift(other.heapRoot[h], nodeOffset);
+            heapNext[heapOffset + h] = shift(other.heapNext[h], heapOffset);
+            heapPrev[heapOffset + h] = shift(other.heapPrev[h], heapOffset);
+            sufMin[heapOffset + h] = shift(other.sufMin[h], heapOffset);
+        }
+        for (int n = 0; n < other.nodes; n++) {
+            leftChild[nodeOffset + n] = shift(other.leftChild[n], nodeOffset);
+            rightChild[nodeOffset + n] = shift(other.rightChild[n], nodeOffset);
+            first[nodeOffset + n] = shift(other.first[n], itemOffset);
+            last[nodeOffset + n] = shift(other.last[n], itemOffset);
+        }
+        System.arraycopy(other.nodeRank, 0, nodeRank, nodeOffset, other.nodes);
+        System.arraycopy(other.nodeSize, 0, nodeSize, nodeOffset, other.nodes);
+        System.arraycopy(other.count, 0, count, nodeOffset, other.nodes);
+        System.arraycopy(other.key, 0, key, nodeOffset, other.nodes);
+        for (int i = 0; i < other.items; i++)
+            itemNext[itemOffset + i] = shift(other.itemNext[i], itemOffset);
+        System.arraycopy(other.item, 0, item, itemOffset, other.items);
+        System.arraycopy(other.corrupt, 0, corrupt, itemOffset, other.items);
+        heaps += other.heaps;
+        nodes += other.nodes;
+        items += other.items;
+
+        // hand the free slots of other over to this soft heap
+        freeHeap = chain(heapNext, shift(other.freeHeap, heapOffset), freeHeap);
+        freeNode = chain(leftChild, shift(other.freeNode, nodeOffset), freeNode);
+        freeItem = chain(itemNext, shift(other.freeItem, itemOffset), freeItem);
+
+        meldQueue(heapOffset + other.queue, other.rank);
+        size += other.size;
+        // clear the other heap, because it has been destroyed in the merging process
+        other.clear();
+    }
+
+    private static int shift(int index, int offset) {
+        return index == NONE ? NONE : index + offset;
+    }
+
+    // appends the free list starting at tail to the free list starting at head and returns the head of the result
+    private static int chain(int[] links, int head, int tail) {
+        if (head == NONE)
+            return tail;
+        int end = head;
+        while (links[end] != NONE)
+            end = links[end];
+        links[end] = tail;
+        return head;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SoftHeap of rank ").append(rank).append(" with ").append(size).append(" elements\n");
+        for (int heap = queue; heap != NONE; heap = heapNext[heap]) {
+            sb.append(describe(heapPrev[heap])).append(" - ").append(describe(heap)).append(" - ")
+              .append(describe(heapNext[heap])).append("\n");
+            sb.append("Suffix-Min points to ").append(describe(sufMin[heap])).append("\n");
         }
+        return sb.toString();
+    }
+
+    private String describe(int heap) {
+        return heap == NONE ? "null" : "R " + rankOf(heap) + " | S " + nodeSize[heapRoot[heap]];
     }
-}
\ No newline at end of file
+}